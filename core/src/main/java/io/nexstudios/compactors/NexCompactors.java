@@ -2,6 +2,9 @@ package io.nexstudios.compactors;
 
 import io.nexstudios.compactors.command.CategoryInvCommand;
 import io.nexstudios.compactors.command.ReloadCommand;
+import io.nexstudios.compactors.command.StatsCommand;
+import io.nexstudios.compactors.inventory.CategoryInventory;
+import io.nexstudios.compactors.inventory.CompactorInventory;
 import io.nexstudios.compactors.register.CompactorRegistry;
 import io.nexstudios.nexus.bukkit.files.NexusFile;
 import io.nexstudios.nexus.bukkit.files.NexusFileReader;
@@ -72,6 +75,8 @@ public class NexCompactors extends JavaPlugin {
     public void onReload() {
 
         loadNexusFiles();
+        CompactorInventory.invalidateCache(); // compactor.yml kann sich geändert haben
+        CategoryInventory.invalidateCache(); // category.yml ebenso
 
         if (compactorRegistry != null) {
             compactorRegistry.reload();
@@ -83,6 +88,7 @@ public class NexCompactors extends JavaPlugin {
     public void registerCommands() {
         int size = commandManager.getRegisteredRootCommands().size();
         commandManager.registerCommand(new ReloadCommand());
+        commandManager.registerCommand(new StatsCommand());
         commandManager.registerCommand(new CategoryInvCommand());
         nexusLogger.info("Successfully registered " + size  + " command(s).");
     }
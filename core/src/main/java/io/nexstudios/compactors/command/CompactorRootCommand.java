@@ -13,6 +13,7 @@ import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -40,8 +41,11 @@ public class CompactorRootCommand extends BaseCommand {
         var cfg = opt.get();
         var scopeAll = new CompactorCommandEntry.Scope("all", List.of());
         List<RecipeConfig> inScope = manager.getRecipesInScope(cfg, scopeAll);
-        List<RecipeConfig> permitted = inScope.stream().filter(r -> hasAllPermissions(p, r)).toList();
-        List<RecipeConfig> locked = inScope.stream().filter(r -> !hasAllPermissions(p, r)).toList();
+        List<RecipeConfig> permitted = new ArrayList<>();
+        List<RecipeConfig> locked = new ArrayList<>();
+        for (RecipeConfig r : inScope) {
+            (manager.hasAllPermissions(p, r) ? permitted : locked).add(r);
+        }
 
         manager.loadPlayerStates(p.getUniqueId(), cfg.getId()).thenAccept(states -> {
             StringBuilder sb = new StringBuilder();
@@ -82,7 +86,7 @@ public class CompactorRootCommand extends BaseCommand {
             NexCompactors.getInstance().getMessageSender().send(sender, "compactors.unknown-recipe", tagResolver);
             return;
         }
-        if (!hasAllPermissions(p, rc.get())) {
+        if (!manager.hasAllPermissions(p, rc.get())) {
             NexCompactors.getInstance().getMessageSender().send(sender, "not-allowed-recipe");
             return;
         }
@@ -122,14 +126,4 @@ public class CompactorRootCommand extends BaseCommand {
         inv.openInv(p, opt);
 
     }
-
-    private boolean hasAllPermissions(Player p, RecipeConfig r) {
-        List<String> perms = r.getPermissions();
-        if (perms == null || perms.isEmpty()) return true;
-        for (String node : perms) {
-            if (node == null || node.isBlank()) continue;
-            if (!p.hasPermission(node)) return false;
-        }
-        return true;
-    }
 }
\ No newline at end of file
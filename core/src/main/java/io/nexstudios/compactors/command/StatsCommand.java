@@ -0,0 +1,90 @@
+package io.nexstudios.compactors.command;
+
+import io.nexstudios.compactors.NexCompactors;
+import io.nexstudios.compactors.database.CompactorStateWriter;
+import io.nexstudios.compactors.inventory.MenuTimings;
+import io.nexstudios.compactors.logic.CompactionScheduler;
+import io.nexstudios.compactors.logic.CompactorManager;
+import io.nexstudios.nexus.libs.commands.BaseCommand;
+import io.nexstudios.nexus.libs.commands.annotation.CommandAlias;
+import io.nexstudios.nexus.libs.commands.annotation.CommandPermission;
+import io.nexstudios.nexus.libs.commands.annotation.Description;
+import io.nexstudios.nexus.libs.commands.annotation.Subcommand;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.bukkit.command.CommandSender;
+
+import java.util.Locale;
+
+@CommandAlias("nexcompactors")
+public class StatsCommand extends BaseCommand {
+
+    @Subcommand("stats")
+    @CommandPermission("nexcompactors.command.admin.stats")
+    @Description("Shows compaction scheduler statistics.")
+    public void onStats(CommandSender sender) {
+        var registry = NexCompactors.getInstance().getCompactorRegistry();
+        CompactorManager manager = registry == null ? null : registry.getCompactorManager();
+        if (manager == null) {
+            sender.sendMessage("Compactors are not initialized.");
+            return;
+        }
+
+        CompactionScheduler.Stats stats = manager.getScheduler().stats();
+        TagResolver tagResolver = TagResolver.resolver(
+                Placeholder.unparsed("queue", String.valueOf(stats.queueDepth())),
+                Placeholder.unparsed("triggers", String.valueOf(stats.triggers())),
+                Placeholder.unparsed("coalesced", String.valueOf(stats.coalesced())),
+                Placeholder.unparsed("passes", String.valueOf(stats.passes())),
+                Placeholder.unparsed("avg_latency", String.format(Locale.ROOT, "%.1f", stats.avgLatencyMs())),
+                Placeholder.unparsed("max_latency", String.format(Locale.ROOT, "%.1f", stats.maxLatencyMs())),
+                Placeholder.unparsed("budget", String.format(Locale.ROOT, "%.2f", stats.budgetMs())),
+                Placeholder.unparsed("last_tick", String.format(Locale.ROOT, "%.2f", stats.lastTickMs())),
+                Placeholder.unparsed("rolled_over", String.valueOf(stats.rolledOverTicks()))
+        );
+        NexCompactors.getInstance().messageSender.send(sender, "general.stats", tagResolver);
+
+        var cache = registry.getPlayerCache();
+        TagResolver cacheResolver = TagResolver.resolver(
+                Placeholder.unparsed("players", String.valueOf(cache.size())),
+                Placeholder.unparsed("memory_kb", String.valueOf(cache.estimatedBytes() / 1024))
+        );
+        NexCompactors.getInstance().messageSender.send(sender, "general.stats-cache", cacheResolver);
+
+        MenuTimings.Stats gui = MenuTimings.stats();
+        TagResolver guiResolver = TagResolver.resolver(
+                Placeholder.unparsed("opens", String.valueOf(gui.opens())),
+                Placeholder.unparsed("avg_open", String.format(Locale.ROOT, "%.1f", gui.avgOpenMs())),
+                Placeholder.unparsed("max_open", String.format(Locale.ROOT, "%.1f", gui.maxOpenMs())),
+                Placeholder.unparsed("avg_main", String.format(Locale.ROOT, "%.2f", gui.avgMainMs())),
+                Placeholder.unparsed("max_main", String.format(Locale.ROOT, "%.2f", gui.maxMainMs()))
+        );
+        NexCompactors.getInstance().messageSender.send(sender, "general.stats-gui", guiResolver);
+
+        CompactorStateWriter writer = registry.getStateWriter();
+        if (writer == null) return;
+        CompactorStateWriter.Stats db = writer.stats();
+        TagResolver dbResolver = TagResolver.resolver(
+                Placeholder.unparsed("queue", String.valueOf(db.queueDepth())),
+                Placeholder.unparsed("in_flight", String.valueOf(db.inFlight())),
+                Placeholder.unparsed("flushes", String.valueOf(db.flushes())),
+                Placeholder.unparsed("rows", String.valueOf(db.rowsWritten())),
+                Placeholder.unparsed("failures", String.valueOf(db.failures())),
+                Placeholder.unparsed("last_flush", String.format(Locale.ROOT, "%.1f", db.lastFlushMs())),
+                Placeholder.unparsed("avg_flush", String.format(Locale.ROOT, "%.1f", db.avgFlushMs()))
+        );
+        NexCompactors.getInstance().messageSender.send(sender, "general.stats-db", dbResolver);
+    }
+
+    @Subcommand("stats reset")
+    @CommandPermission("nexcompactors.command.admin.stats")
+    @Description("Resets the compaction scheduler statistics.")
+    public void onStatsReset(CommandSender sender) {
+        var registry = NexCompactors.getInstance().getCompactorRegistry();
+        CompactorManager manager = registry == null ? null : registry.getCompactorManager();
+        if (manager == null) return;
+        manager.getScheduler().resetStats();
+        MenuTimings.reset();
+        NexCompactors.getInstance().messageSender.send(sender, "general.stats-reset");
+    }
+}
@@ -16,6 +16,7 @@ public class CompactorConfig {
     CompactorCommandConfig commands;
     boolean chainingEnabled;
     int maxCraftsPerCycle;
+    boolean bulkCrafting;
     CompactorTriggers triggers;
     CompactorFeedback feedback;
     List<RecipeConfig> recipes;
@@ -0,0 +1,333 @@
+package io.nexstudios.compactors.config;
+
+import io.nexstudios.compactors.logic.CompiledMatcher;
+import io.nexstudios.nexus.bukkit.utils.NexusLogger;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.MemoryConfiguration;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Binärer Cache der geparsten Compactor-Configs (plugins/NexCompactors/cache/compactors.bin).
+ * <p>
+ * Pro Datei: compactorId, SHA-256 des Dateiinhalts und die kodierte {@link CompactorConfig}.
+ * Der ganze Cache gilt nur für dieselbe Plugin-Version und dasselbe Format; passt der Hash einer
+ * Datei nicht mehr, wird sie wie gewohnt per YAML geparst. Werte, die nicht kodierbar sind
+ * (z.B. serialisierte Bukkit-Objekte), machen nur diese Datei uncachebar.
+ */
+public final class CompactorConfigCache {
+
+    private static final int MAGIC = 0x4E43_4343; // "NCCC"
+    private static final int FORMAT = 2; // erhöhen, wenn sich Parser-Defaults oder das Layout ändern
+
+    /** Kodierte Config einer Datei. */
+    public record Entry(String hash, byte[] payload) {}
+
+    private final Path file;
+    private final String pluginVersion;
+    private final NexusLogger logger;
+
+    public CompactorConfigCache(File dataFolder, String pluginVersion, NexusLogger logger) {
+        this.file = dataFolder.toPath().resolve("cache").resolve("compactors.bin");
+        this.pluginVersion = pluginVersion;
+        this.logger = logger;
+    }
+
+    /** compactorId -> Eintrag; leer, wenn der Cache fehlt, kaputt ist oder von einer anderen Version stammt. */
+    public Map<String, Entry> load() {
+        if (!Files.isRegularFile(file)) return Map.of();
+        // eine sequenzielle Lesung der ganzen Datei, Dekodieren passiert später pro Datei
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) return Map.of();
+            if (!pluginVersion.equals(readString(in))) return Map.of();
+            int count = in.readInt();
+            Map<String, Entry> entries = new HashMap<>(Math.max(16, count * 2));
+            for (int i = 0; i < count; i++) {
+                String id = readString(in);
+                String hash = readString(in);
+                byte[] payload = new byte[in.readInt()];
+                in.readFully(payload);
+                entries.put(id, new Entry(hash, payload));
+            }
+            return entries;
+        } catch (IOException | RuntimeException ex) {
+            logger.warning("Compactor config cache unreadable, parsing YAML instead: " + ex.getMessage());
+            return Map.of();
+        }
+    }
+
+    /** Schreibt alle Einträge neu (temporäre Datei + Move, damit ein Absturz keinen halben Cache hinterlässt). */
+    public void save(Map<String, Entry> entries) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                writeString(out, pluginVersion);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    writeString(out, e.getKey());
+                    writeString(out, e.getValue().hash());
+                    out.writeInt(e.getValue().payload().length);
+                    out.write(e.getValue().payload());
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            logger.warning("Could not write compactor config cache: " + ex.getMessage());
+        }
+    }
+
+    // ---- Kodierung ----
+
+    /** null, wenn die Config Werte enthält, die nicht kodierbar sind. */
+    public static byte[] encode(CompactorConfig cfg) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, cfg.getId());
+            writeValue(out, topLevel(cfg.getCategoryItem()));
+            writeString(out, cfg.getName());
+            out.writeBoolean(cfg.isEnabled());
+
+            CompactorCommandConfig commands = cfg.getCommands();
+            out.writeBoolean(commands.isEnabled());
+            out.writeInt(commands.getEntries().size());
+            for (CompactorCommandEntry e : commands.getEntries()) {
+                writeString(out, e.getId());
+                writeString(out, e.getLabel());
+                writeValue(out, e.getAliases());
+                writeString(out, e.getPermission());
+                writeString(out, e.getScope().getMode());
+                writeValue(out, e.getScope().getList());
+            }
+
+            out.writeBoolean(cfg.isChainingEnabled());
+            out.writeInt(cfg.getMaxCraftsPerCycle());
+            out.writeBoolean(cfg.isBulkCrafting());
+
+            CompactorTriggers t = cfg.getTriggers();
+            out.writeBoolean(t.isOnPickup());
+            out.writeBoolean(t.isOnAutoPickup());
+            out.writeBoolean(t.isOnAddItem());
+            out.writeInt(t.getDelayTicks());
+
+            CompactorFeedback f = cfg.getFeedback();
+            writeString(out, f.getChatMessage());
+            out.writeBoolean(f.isSoundEnabled());
+            writeString(out, f.getSoundType());
+            out.writeFloat(f.getSoundVolume());
+            out.writeFloat(f.getSoundPitch());
+            out.writeInt(f.getRateLimitTicks());
+
+            out.writeInt(cfg.getRecipes().size());
+            for (RecipeConfig r : cfg.getRecipes()) {
+                writeString(out, r.getId());
+                writeString(out, r.getName());
+                out.writeBoolean(r.isEnabled());
+                out.writeInt(r.getPriority());
+                writeValue(out, r.getPermissions());
+                RequiredConfig req = r.getRequired();
+                writeString(out, req.getItem());
+                out.writeInt(req.getAmount());
+                MatcherConfig m = req.getMatcher();
+                out.writeBoolean(m != null);
+                if (m != null) {
+                    writeString(out, m.getType());
+                    writeString(out, m.getName());
+                    writeValue(out, m.getLoreContains());
+                    writeValue(out, m.getCustomModelData());
+                    writeValue(out, m.getNbt());
+                }
+                writeString(out, r.getResult().getItem());
+                out.writeInt(r.getResult().getAmount());
+            }
+        } catch (IOException ex) {
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static CompactorConfig decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        String id = readString(in);
+        Map<String, Object> categoryItem = categoryItem((Map<String, Object>) readValue(in));
+        String name = readString(in);
+        boolean enabled = in.readBoolean();
+
+        boolean commandsEnabled = in.readBoolean();
+        int commandCount = in.readInt();
+        List<CompactorCommandEntry> entries = new ArrayList<>(commandCount);
+        for (int i = 0; i < commandCount; i++) {
+            String cid = readString(in);
+            String label = readString(in);
+            List<String> aliases = (List<String>) readValue(in);
+            String permission = readString(in);
+            String mode = readString(in);
+            List<String> list = (List<String>) readValue(in);
+            entries.add(new CompactorCommandEntry(cid, label, aliases, permission, new CompactorCommandEntry.Scope(mode, list)));
+        }
+        CompactorCommandConfig commands = new CompactorCommandConfig(commandsEnabled,
+                commandsEnabled ? entries : Collections.emptyList());
+
+        boolean chaining = in.readBoolean();
+        int maxCrafts = in.readInt();
+        boolean bulk = in.readBoolean();
+
+        CompactorTriggers triggers = new CompactorTriggers(in.readBoolean(), in.readBoolean(), in.readBoolean(), in.readInt());
+        CompactorFeedback feedback = new CompactorFeedback(readString(in), in.readBoolean(), readString(in),
+                in.readFloat(), in.readFloat(), in.readInt());
+
+        int recipeCount = in.readInt();
+        List<RecipeConfig> recipes = new ArrayList<>(recipeCount);
+        for (int i = 0; i < recipeCount; i++) {
+            String rid = readString(in);
+            String rname = readString(in);
+            boolean renabled = in.readBoolean();
+            int priority = in.readInt();
+            List<String> permissions = (List<String>) readValue(in);
+            String reqItem = readString(in);
+            int reqAmount = in.readInt();
+            MatcherConfig matcher = null;
+            if (in.readBoolean()) {
+                matcher = new MatcherConfig(readString(in), readString(in), (List<String>) readValue(in),
+                        (Integer) readValue(in), (Map<String, Object>) readValue(in));
+            }
+            String outItem = readString(in);
+            int outAmount = in.readInt();
+            recipes.add(RecipeConfig.builder()
+                    .id(rid)
+                    .name(rname)
+                    .enabled(renabled)
+                    .priority(priority)
+                    .permissions(permissions == null ? Collections.emptyList() : Collections.unmodifiableList(permissions))
+                    .required(new RequiredConfig(reqItem, reqAmount, matcher, CompiledMatcher.compile(reqItem, matcher)))
+                    .result(new ResultConfig(outItem, outAmount))
+                    .build());
+        }
+
+        return CompactorConfig.builder()
+                .id(id)
+                .categoryItem(categoryItem)
+                .name(name)
+                .enabled(enabled)
+                .commands(commands)
+                .chainingEnabled(chaining)
+                .maxCraftsPerCycle(maxCrafts)
+                .bulkCrafting(bulk)
+                .triggers(triggers)
+                .feedback(feedback)
+                .recipes(recipes)
+                .build();
+    }
+
+    // category-item ist getValues(true): nur Top-Level-Schlüssel speichern, Sections werden verschachtelte Maps
+    private static Map<String, Object> topLevel(Map<String, Object> flat) {
+        Map<String, Object> top = new LinkedHashMap<>();
+        if (flat != null) {
+            flat.forEach((k, v) -> {
+                if (k.indexOf('.') < 0) top.put(k, v);
+            });
+        }
+        return top;
+    }
+
+    // Gegenstück zu topLevel: wieder eine Section aufbauen und tief auslesen, wie beim YAML-Parsing
+    private static Map<String, Object> categoryItem(Map<String, Object> tree) {
+        if (tree == null || tree.isEmpty()) return Collections.emptyMap();
+        return new MemoryConfiguration().createSection("category-item", tree).getValues(true);
+    }
+
+    private static final byte NULL = 0, STRING = 1, BOOLEAN = 2, INT = 3, LONG = 4, DOUBLE = 5, LIST = 6, MAP = 7;
+
+    private static void writeValue(DataOutputStream out, Object v) throws IOException {
+        switch (v) {
+            case null -> out.writeByte(NULL);
+            case String s -> {
+                out.writeByte(STRING);
+                writeString(out, s);
+            }
+            case Boolean b -> {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean(b);
+            }
+            case Integer i -> {
+                out.writeByte(INT);
+                out.writeInt(i);
+            }
+            case Long l -> {
+                out.writeByte(LONG);
+                out.writeLong(l);
+            }
+            case Double d -> {
+                out.writeByte(DOUBLE);
+                out.writeDouble(d);
+            }
+            case List<?> list -> {
+                out.writeByte(LIST);
+                out.writeInt(list.size());
+                for (Object o : list) writeValue(out, o);
+            }
+            case ConfigurationSection sec -> writeValue(out, sec.getValues(false));
+            case Map<?, ?> map -> {
+                out.writeByte(MAP);
+                out.writeInt(map.size());
+                for (Map.Entry<?, ?> e : map.entrySet()) {
+                    writeString(out, String.valueOf(e.getKey()));
+                    writeValue(out, e.getValue());
+                }
+            }
+            default -> throw new IOException("unsupported value type " + v.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case NULL -> null;
+            case STRING -> readString(in);
+            case BOOLEAN -> in.readBoolean();
+            case INT -> in.readInt();
+            case LONG -> in.readLong();
+            case DOUBLE -> in.readDouble();
+            case LIST -> {
+                int n = in.readInt();
+                List<Object> list = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) list.add(readValue(in));
+                yield list;
+            }
+            case MAP -> {
+                int n = in.readInt();
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < n; i++) map.put(readString(in), readValue(in));
+                yield map;
+            }
+            default -> throw new IOException("unknown value tag " + tag);
+        };
+    }
+
+    // writeUTF ist auf 64 KB begrenzt; -1 => null
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) return null;
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -5,12 +5,24 @@ import io.nexstudios.nexus.bukkit.files.NexusFileReader;
 import io.nexstudios.nexus.bukkit.utils.NexusLogger;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -19,25 +31,127 @@ public class CompactorFileReader {
     private final NexCompactors plugin;
     private final NexusLogger logger;
 
-    public List<CompactorConfig> readAll() {
+    /** Eine gelesene Datei; parsed == null => Inhalt unverändert gegenüber dem bekannten Hash. */
+    public record Source(String id, String hash, CompactorConfig parsed) {
+        public boolean unchanged() {
+            return parsed == null;
+        }
+    }
+
+    // Ergebnis einer Datei aus dem Worker; geloggt wird erst danach in Datei-Reihenfolge
+    // payload: kodierte Config für den Binär-Cache (null => nicht cachebar/unbekannt)
+    private record Outcome(File file, Source source, String error, byte[] payload, boolean fromCache) {
+        static Outcome failed(File file, String error) {
+            return new Outcome(file, null, error, null, false);
+        }
+    }
+
+    /**
+     * Liest alle Dateien unter compactors/ und parst nur die, deren Hash nicht in knownHashes
+     * (compactorId -> Hash) steht. Thread-sicher, darf asynchron laufen.
+     * <p>
+     * Lesen, Hashen und YAML-Parsing laufen parallel auf einem begrenzten Pool und berühren keine
+     * Bukkit-API; Item-Prototypen werden erst beim Kompilieren auf dem Main-Thread aufgelöst.
+     * Dateien, deren Hash im {@link CompactorConfigCache} steht, werden aus dem Cache dekodiert statt geparst.
+     * Fehlerhafte Dateien werden in Datei-Reihenfolge geloggt und fehlen im Ergebnis.
+     */
+    public List<Source> read(Map<String, String> knownHashes) {
         File folder = new File(plugin.getDataFolder(), "compactors");
         if (!folder.exists() && !folder.mkdirs()) {
             logger.error("Could not create 'compactors' folder.");
         }
-        NexusFileReader nfr = new NexusFileReader("compactors", plugin);
-        List<CompactorConfig> result = new ArrayList<>();
-        nfr.getFiles().forEach((fileName) -> {
-            logger.info("Parsing compactor file '" + fileName + "'");
-            String id = fileName.getName().replace(".yml", ""); // remove .yml
-            try {
-                FileConfiguration cfg = YamlConfiguration.loadConfiguration(fileName);
-                CompactorConfig parsed = CompactorYamlParser.parse(id, cfg, logger);
-                result.add(parsed);
-                logger.info("Parsed compactor file '" + fileName + "'");
-            } catch (Exception ex) {
-                logger.error("Failed to parse compactor file '" + fileName + "': " + ex.getMessage());
+        List<File> files = new ArrayList<>(new NexusFileReader("compactors", plugin).getFiles());
+        files.sort(Comparator.comparing(File::getPath)); // stabile Reihenfolge für Duplikate und Logs
+        if (files.isEmpty()) return List.of();
+
+        long start = System.nanoTime();
+        CompactorConfigCache cache = plugin.getSettingsFile().getBoolean("cache.compiled-configs", true)
+                ? new CompactorConfigCache(plugin.getDataFolder(), plugin.getPluginMeta().getVersion(), logger)
+                : null;
+        Map<String, CompactorConfigCache.Entry> cached = cache == null ? Map.of() : cache.load();
+        int threads = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors() - 1));
+        List<Outcome> outcomes = new ArrayList<>(files.size());
+        try (ExecutorService pool = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("NexCompactors-Parser-", 0).daemon().factory())) {
+            List<Future<Outcome>> futures = new ArrayList<>(files.size());
+            for (File file : files) {
+                futures.add(pool.submit(() -> readOne(file, knownHashes, cached)));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    outcomes.add(futures.get(i).get());
+                } catch (ExecutionException ex) {
+                    outcomes.add(Outcome.failed(files.get(i), String.valueOf(ex.getCause())));
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while parsing compactor files.");
+            return List.of();
+        }
+
+        List<Source> result = new ArrayList<>(outcomes.size());
+        Map<String, CompactorConfigCache.Entry> nextCache = new HashMap<>();
+        int parsed = 0;
+        int fromCache = 0;
+        for (Outcome o : outcomes) {
+            if (o.error() != null) {
+                logger.error("Failed to parse compactor file '" + o.file() + "': " + o.error());
+                continue;
             }
-        });
+            Source src = o.source();
+            if (o.fromCache()) fromCache++;
+            else if (!src.unchanged()) parsed++;
+            if (o.payload() != null) nextCache.putIfAbsent(src.id(), new CompactorConfigCache.Entry(src.hash(), o.payload()));
+            result.add(src);
+        }
+        if (cache != null && !sameHashes(cached, nextCache)) {
+            cache.save(nextCache);
+        }
+        long ms = (System.nanoTime() - start) / 1_000_000L;
+        logger.info("Loaded " + result.size() + " compactor file(s): " + parsed + " parsed, " + fromCache + " from cache, "
+                + (result.size() - parsed - fromCache) + " unchanged, " + (outcomes.size() - result.size()) + " failed ("
+                + ms + " ms, " + threads + " thread(s)).");
         return result;
     }
-}
\ No newline at end of file
+
+    private Outcome readOne(File file, Map<String, String> knownHashes, Map<String, CompactorConfigCache.Entry> cached) {
+        String id = file.getName().replace(".yml", ""); // remove .yml
+        try {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            String hash = sha256(bytes);
+            CompactorConfigCache.Entry entry = cached.get(id);
+            byte[] cachedPayload = entry != null && entry.hash().equals(hash) ? entry.payload() : null;
+            if (hash.equals(knownHashes.get(id))) {
+                return new Outcome(file, new Source(id, hash, null), null, cachedPayload, false);
+            }
+            if (cachedPayload != null) {
+                try {
+                    CompactorConfig decoded = CompactorConfigCache.decode(cachedPayload);
+                    return new Outcome(file, new Source(id, hash, decoded), null, cachedPayload, true);
+                } catch (IOException | RuntimeException ex) {
+                    // kaputter Eintrag => normal parsen und neu schreiben
+                }
+            }
+            // aus denselben Bytes parsen, damit Hash und Inhalt sicher zusammenpassen
+            YamlConfiguration cfg = new YamlConfiguration();
+            cfg.loadFromString(new String(bytes, StandardCharsets.UTF_8));
+            CompactorConfig parsed = CompactorYamlParser.parse(id, cfg, logger);
+            return new Outcome(file, new Source(id, hash, parsed), null, CompactorConfigCache.encode(parsed), false);
+        } catch (Exception ex) {
+            return Outcome.failed(file, ex.getMessage());
+        }
+    }
+
+    private static boolean sameHashes(Map<String, CompactorConfigCache.Entry> a, Map<String, CompactorConfigCache.Entry> b) {
+        if (a.size() != b.size()) return false;
+        for (Map.Entry<String, CompactorConfigCache.Entry> e : b.entrySet()) {
+            CompactorConfigCache.Entry other = a.get(e.getKey());
+            if (other == null || !other.hash().equals(e.getValue().hash())) return false;
+        }
+        return true;
+    }
+
+    private static String sha256(byte[] bytes) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+}
@@ -1,5 +1,6 @@
 package io.nexstudios.compactors.config;
 
+import io.nexstudios.compactors.logic.CompiledMatcher;
 import io.nexstudios.nexus.bukkit.utils.NexusLogger;
 import io.nexstudios.nexus.bukkit.utils.StringUtils;
 import net.kyori.adventure.text.Component;
@@ -46,6 +47,7 @@ public final class CompactorYamlParser {
         var chainSec = cfg.getConfigurationSection("chaining");
         boolean chainingEnabled = chainSec == null || chainSec.getBoolean("enabled", true);
         int maxCrafts = chainSec == null ? 1024 : chainSec.getInt("max-crafts-per-cycle", 1024);
+        boolean bulkCrafting = chainSec != null && chainSec.getBoolean("bulk-crafting", false);
 
         // Triggers
         var trig = cfg.getConfigurationSection("triggers");
@@ -87,6 +89,7 @@ public final class CompactorYamlParser {
                 .commands(commandConfig)
                 .chainingEnabled(chainingEnabled)
                 .maxCraftsPerCycle(maxCrafts)
+                .bulkCrafting(bulkCrafting)
                 .triggers(triggers)
                 .feedback(feedback)
                 .recipes(recipes)
@@ -162,7 +165,7 @@ public final class CompactorYamlParser {
                 .enabled(enabled)
                 .priority(priority)
                 .permissions(permissions)
-                .required(new RequiredConfig(reqItem, reqAmount, matcher))
+                .required(new RequiredConfig(reqItem, reqAmount, matcher, CompiledMatcher.compile(reqItem, matcher)))
                 .result(new ResultConfig(outItem, outAmount))
                 .build();
     }
@@ -1,5 +1,6 @@
 package io.nexstudios.compactors.config;
 
+import io.nexstudios.compactors.logic.CompiledMatcher;
 import lombok.Value;
 
 @Value
@@ -7,4 +8,5 @@ public class RequiredConfig {
     String item; // namespaced id
     int amount;
     MatcherConfig matcher; // optional; null => MATERIAL-only
+    CompiledMatcher compiled; // beim Parsen aus item + matcher gebaut
 }
\ No newline at end of file
@@ -2,42 +2,218 @@ package io.nexstudios.compactors.database;
 
 import lombok.NonNull;
 
-import java.util.Collections;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Spielerbezogener Cache für Compactor-Recipe-States.
  * Struktur:
- *   playerUUID -> compactorId -> (recipeId -> enabled)
- *
- * Lebenszeit: bis Server-Stopp (kein Evict bei Quit).
+ *   playerUUID -> compactorId -> Bitset über die Rezept-Reihenfolge des kompilierten Compactors
+ * <p>
+ * Die Reihenfolge (Layout) wird bei jedem Laden/Reload über {@link #setLayouts} gesetzt. Einträge mit
+ * altem Layout werden beim Zugriff per Recipe-Id umgemappt; fehlen dabei Rezepte (neu hinzugekommen),
+ * gilt der Eintrag als Miss und wird aus der DB neu geladen.
+ * <p>
+ * Lebenszeit: online immer; offline bis {@code offlineTtlMillis} abgelaufen ist oder die
+ * Obergrenze an Spielern erreicht wird (älteste Offline-Spieler zuerst). Spieler-Einträge legt nur
+ * {@link #markOnline} an; Loads, die erst nach Quit bzw. Verdrängung fertig werden, landen nicht im Cache.
  */
 public final class CompactorPlayerCache {
 
-    // player -> (compactorId -> states)
-    private final ConcurrentHashMap<UUID, ConcurrentHashMap<String, ConcurrentHashMap<String, Boolean>>> store = new ConcurrentHashMap<>();
+    /** Rezept-Ids in Index-Reihenfolge eines kompilierten Compactors. */
+    private record Layout(String[] ids, Map<String, Integer> index) {
+        static Layout of(List<String> recipeIds) {
+            Map<String, Integer> index = new HashMap<>();
+            for (int i = 0; i < recipeIds.size(); i++) index.put(recipeIds.get(i), i);
+            return new Layout(recipeIds.toArray(String[]::new), Map.copyOf(index));
+        }
+    }
+
+    /** Unveränderlich; Updates ersetzen den Eintrag (Copy-on-Write). */
+    private record Bits(Layout layout, BitSet enabled) {}
+
+    private static final class PlayerEntry {
+        final ConcurrentHashMap<String, Bits> compactors = new ConcurrentHashMap<>();
+        volatile long offlineSince; // 0 => online
+    }
+
+    private final ConcurrentHashMap<UUID, PlayerEntry> store = new ConcurrentHashMap<>();
+    private volatile Map<String, Layout> layouts = Map.of();
+    private volatile long offlineTtlMillis = 30 * 60_000L;
+    private volatile int maxPlayers = 5_000;
+
+    public void configure(long offlineTtlMillis, int maxPlayers) {
+        this.offlineTtlMillis = Math.max(0, offlineTtlMillis);
+        this.maxPlayers = Math.max(1, maxPlayers);
+    }
+
+    /**
+     * compactorId -> Rezept-Ids in der Index-Reihenfolge des kompilierten Compactors.
+     * Unveränderte Reihenfolgen behalten ihr Layout, deren Einträge bleiben also ohne Ummappen gültig.
+     */
+    public void setLayouts(Map<String, List<String>> recipeIdsByCompactor) {
+        Map<String, Layout> previous = layouts;
+        Map<String, Layout> next = new HashMap<>();
+        recipeIdsByCompactor.forEach((id, ids) -> {
+            Layout old = previous.get(id);
+            next.put(id, old != null && Arrays.asList(old.ids()).equals(ids) ? old : Layout.of(ids));
+        });
+        this.layouts = Map.copyOf(next);
+    }
 
     public Map<String, Boolean> getStates(UUID player, String compactorId) {
-        var compactorMap = store.get(player);
-        if (compactorMap == null) return null;
-        var map = compactorMap.get(compactorId);
-        return map == null ? null : Collections.unmodifiableMap(map);
+        PlayerEntry entry = store.get(player);
+        if (entry == null) return null;
+        Bits bits = current(entry, compactorId);
+        return bits == null ? null : new StateView(bits);
     }
 
     public void putStates(UUID player, String compactorId, @NonNull Map<String, Boolean> states) {
-        store.computeIfAbsent(player, k -> new ConcurrentHashMap<>())
-                .put(compactorId, new ConcurrentHashMap<>(states));
+        Layout layout = layouts.get(compactorId);
+        if (layout == null) return; // Compactor nicht aktiv => nichts zu cachen
+        BitSet enabled = new BitSet(layout.ids().length);
+        states.forEach((recipeId, on) -> {
+            Integer i = layout.index().get(recipeId);
+            if (i != null && Boolean.TRUE.equals(on)) enabled.set(i);
+        });
+        // Kein Eintrag => Spieler nicht (mehr) online oder schon verdrängt; nicht neu anlegen (sonst nie verdrängt)
+        PlayerEntry entry = store.get(player);
+        if (entry == null) return;
+        entry.compactors.put(compactorId, new Bits(layout, enabled));
     }
 
     public void putState(UUID player, String compactorId, String recipeId, boolean enabled) {
-        store.computeIfAbsent(player, k -> new ConcurrentHashMap<>())
-                .computeIfAbsent(compactorId, k -> new ConcurrentHashMap<>())
-                .put(recipeId, enabled);
+        PlayerEntry entry = store.get(player);
+        if (entry == null) return;
+        // Ohne gültigen Eintrag nichts tun: der nächste Zugriff lädt aus der DB (inkl. Write-Behind-Overlay)
+        entry.compactors.computeIfPresent(compactorId, (id, bits) -> {
+            Bits cur = remap(bits, layouts.get(id));
+            if (cur == null) return null;
+            Integer i = cur.layout().index().get(recipeId);
+            if (i == null || cur.enabled().get(i) == enabled) return cur;
+            BitSet copy = (BitSet) cur.enabled().clone();
+            copy.set(i, enabled);
+            return new Bits(cur.layout(), copy);
+        });
+    }
+
+    public void markOnline(UUID player) {
+        entry(player).offlineSince = 0;
+    }
+
+    public void markOffline(UUID player) {
+        PlayerEntry entry = store.get(player);
+        if (entry != null) entry.offlineSince = System.currentTimeMillis();
+    }
+
+    /** Entfernt abgelaufene Offline-Spieler und hält die Obergrenze ein (älteste Offline-Spieler zuerst). */
+    public int evictExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        List<Map.Entry<UUID, PlayerEntry>> offline = new ArrayList<>();
+        for (Map.Entry<UUID, PlayerEntry> e : store.entrySet()) {
+            long since = e.getValue().offlineSince;
+            if (since == 0) continue;
+            if (now - since >= offlineTtlMillis) {
+                if (store.remove(e.getKey(), e.getValue())) removed++;
+            } else {
+                offline.add(e);
+            }
+        }
+        int excess = store.size() - maxPlayers;
+        if (excess > 0) {
+            offline.sort(Comparator.comparingLong(e -> e.getValue().offlineSince));
+            for (int i = 0; i < offline.size() && excess > 0; i++) {
+                Map.Entry<UUID, PlayerEntry> e = offline.get(i);
+                if (store.remove(e.getKey(), e.getValue())) {
+                    removed++;
+                    excess--;
+                }
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    /** Grobe Schätzung des Heap-Verbrauchs in Bytes (Map-Knoten, Einträge, Bitsets). */
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (PlayerEntry entry : store.values()) {
+            bytes += 48 + 32 + 64; // Map-Knoten + UUID + PlayerEntry/innere Map
+            for (Bits bits : entry.compactors.values()) {
+                bytes += 32 + 16 + 24 + 8L * ((bits.enabled().length() + 63) / 64); // Knoten + Bits + BitSet + Wörter
+            }
+        }
+        return bytes;
     }
 
     public void clearAll() {
         store.clear();
     }
-}
\ No newline at end of file
+
+    private PlayerEntry entry(UUID player) {
+        return store.computeIfAbsent(player, k -> new PlayerEntry());
+    }
+
+    // Eintrag auf das aktuelle Layout bringen (nach Reload); null => Miss
+    private Bits current(PlayerEntry entry, String compactorId) {
+        Bits bits = entry.compactors.get(compactorId);
+        if (bits == null) return null;
+        Layout layout = layouts.get(compactorId);
+        if (bits.layout() == layout) return bits;
+        Bits remapped = remap(bits, layout);
+        if (remapped == null) entry.compactors.remove(compactorId, bits);
+        else entry.compactors.replace(compactorId, bits, remapped);
+        return remapped;
+    }
+
+    private static Bits remap(Bits bits, Layout layout) {
+        if (layout == null) return null;
+        if (bits.layout() == layout) return bits;
+        BitSet enabled = new BitSet(layout.ids().length);
+        for (int i = 0; i < layout.ids().length; i++) {
+            Integer old = bits.layout().index().get(layout.ids()[i]);
+            if (old == null) return null; // neues Rezept, State unbekannt
+            if (bits.enabled().get(old)) enabled.set(i);
+        }
+        return new Bits(layout, enabled);
+    }
+
+    /** Read-only Map-Sicht auf einen Eintrag; {@code get} ist ein Index-Lookup. */
+    private static final class StateView extends AbstractMap<String, Boolean> {
+        private final Bits bits;
+
+        StateView(Bits bits) {
+            this.bits = bits;
+        }
+
+        @Override
+        public Boolean get(Object key) {
+            Integer i = bits.layout().index().get(key);
+            return i == null ? null : bits.enabled().get(i);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return bits.layout().index().containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return bits.layout().ids().length;
+        }
+
+        @Override
+        public Set<Entry<String, Boolean>> entrySet() {
+            String[] ids = bits.layout().ids();
+            Set<Entry<String, Boolean>> set = new LinkedHashSet<>();
+            for (int i = 0; i < ids.length; i++) {
+                set.add(new SimpleImmutableEntry<>(ids[i], bits.enabled().get(i)));
+            }
+            return Collections.unmodifiableSet(set);
+        }
+    }
+}
@@ -4,20 +4,65 @@ import io.nexstudios.nexus.bukkit.database.api.DbAsyncHelper;
 import io.nexstudios.nexus.bukkit.utils.NexusLogger;
 import lombok.RequiredArgsConstructor;
 
+import java.nio.ByteBuffer;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
+/**
+ * Persistenz der Recipe-States (Schema v2).
+ * <p>
+ * Eine Zeile pro (player, compactor): Player als {@code BINARY(16)}, Compactor und Rezepte als
+ * internierte Zahlen-Ids ({@code nex_compactor_compactors}/{@code nex_compactor_recipes}) und die
+ * aktivierten Rezepte als Bitmaske ({@code BitSet#toByteArray}). Laden und Speichern sind damit
+ * Punkt-Operationen auf einer Zeile. Beim Speichern wird die gelesene Maske nur an den geänderten
+ * Rezepten angepasst (Read-Modify-Write), Bits anderer Rezepte bleiben stehen.
+ * <p>
+ * Ids vergibt die Datenbank (Insert-if-absent, danach Re-Read), damit mehrere Server auf derselben
+ * DB dieselben Ids sehen. Eine Id wird erst nach erfolgreichem Insert verwendet.
+ * <p>
+ * Die alte Tabelle {@code nex_compactor_state} (eine Zeile pro Rezept) wird von
+ * {@link CompactorStateMigration} im Hintergrund übernommen. Bis die Migration fertig ist, werden
+ * (player, compactor)-Paare ohne v2-Zeile aus der alten Tabelle gelesen.
+ */
 @RequiredArgsConstructor
 public class CompactorPlayerStateDao {
 
     private final DbAsyncHelper db;
     private final NexusLogger logger;
 
+    static final int SCHEMA_VERSION = 2;
+
+    // Spieler pro IN-Liste
+    private static final int IN_CHUNK = 200;
+
+    // Internierte Ids (klein, komplett im Speicher)
+    private final Map<String, Integer> compactorIds = new ConcurrentHashMap<>();
+    private final Map<Integer, String> compactorNames = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<String, Integer>> recipeIds = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<Integer, String>> recipeNames = new ConcurrentHashMap<>();
+    // Laufende Internierungen (pro Name nur ein Insert gleichzeitig)
+    private final Map<String, CompletableFuture<Integer>> interning = new ConcurrentHashMap<>();
+
+    // true, bis die Migration aus der alten Tabelle abgeschlossen ist
+    private volatile boolean legacyFallback = true;
+
+    public record StateKey(UUID player, String compactorId) {}
+
+    private record Pair(UUID player, int compactor) {}
+
+    private record MaskRow(UUID player, int compactor, byte[] mask) {}
+
+    private record LegacyRow(UUID player, String compactorId, String recipeId, boolean enabled) {}
+
+    // ===== Schema =====
+
     public CompletableFuture<Void> initSchemaAsync() {
-        String sql = """
+        List<String> ddl = List.of(
+                """
                 CREATE TABLE IF NOT EXISTS nex_compactor_state (
                     player_uuid VARCHAR(36) NOT NULL,
                     compactor_id VARCHAR(128) NOT NULL,
@@ -25,20 +70,267 @@ public class CompactorPlayerStateDao {
                     enabled BOOLEAN NOT NULL,
                     PRIMARY KEY (player_uuid, compactor_id, recipe_id)
                 );
-                """;
-        return db.updateAsync(sql)
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS nex_compactor_meta (
+                    meta_key VARCHAR(64) NOT NULL,
+                    meta_value VARCHAR(255) NOT NULL,
+                    PRIMARY KEY (meta_key)
+                );
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS nex_compactor_compactors (
+                    id INT NOT NULL,
+                    name VARCHAR(128) NOT NULL,
+                    PRIMARY KEY (id),
+                    UNIQUE (name)
+                );
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS nex_compactor_recipes (
+                    compactor INT NOT NULL,
+                    id INT NOT NULL,
+                    name VARCHAR(128) NOT NULL,
+                    PRIMARY KEY (compactor, id),
+                    UNIQUE (compactor, name)
+                );
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS nex_compactor_state_v2 (
+                    player BINARY(16) NOT NULL,
+                    compactor INT NOT NULL,
+                    mask BLOB NOT NULL,
+                    PRIMARY KEY (player, compactor)
+                );
+                """
+        );
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (String sql : ddl) {
+            chain = chain.thenCompose(v -> db.updateAsync(sql).thenApply(rows -> null));
+        }
+        return chain
+                .thenCompose(v -> loadIds())
+                .thenCompose(v -> readMeta("schema_version"))
+                .thenAccept(version -> legacyFallback = !String.valueOf(SCHEMA_VERSION).equals(version))
                 .exceptionally(ex -> {
-                    logger.error("Failed to create nex_compactor_state: " + ex.getMessage());
-                    return 0;
-                })
+                    logger.error("Failed to initialize compactor state schema: " + ex.getMessage());
+                    return null;
+                });
+    }
+
+    // Bei doppelt vergebenen Namen (Tabellen ohne UNIQUE) gilt die kleinste Id, wie in selectId
+    private CompletableFuture<Void> loadIds() {
+        CompletableFuture<Void> compactors = db.queryAsync("SELECT id, name FROM nex_compactor_compactors ORDER BY id", rs -> {
+            try {
+                return Map.entry(rs.getInt("id"), rs.getString("name"));
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }).thenAccept(rows -> rows.forEach(e -> {
+            compactorIds.putIfAbsent(e.getValue(), e.getKey());
+            compactorNames.put(e.getKey(), e.getValue());
+        }));
+        CompletableFuture<Void> recipes = db.queryAsync("SELECT compactor, id, name FROM nex_compactor_recipes ORDER BY id", rs -> {
+            try {
+                return new Object[]{rs.getInt("compactor"), rs.getInt("id"), rs.getString("name")};
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }).thenAccept(rows -> rows.forEach(r -> {
+            int compactor = (int) r[0];
+            recipeIds.computeIfAbsent(compactor, k -> new ConcurrentHashMap<>()).putIfAbsent((String) r[2], (int) r[1]);
+            recipeNames.computeIfAbsent(compactor, k -> new ConcurrentHashMap<>()).put((int) r[1], (String) r[2]);
+        }));
+        return CompletableFuture.allOf(compactors, recipes);
+    }
+
+    CompletableFuture<String> readMeta(String key) {
+        return db.queryAsync("SELECT meta_value FROM nex_compactor_meta WHERE meta_key=?", rs -> {
+            try {
+                return rs.getString("meta_value");
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }, key).thenApply(rows -> rows.isEmpty() ? null : rows.get(0));
+    }
+
+    // Portabel ohne dialektabhängiges Upsert
+    CompletableFuture<Void> writeMeta(String key, String value) {
+        return db.updateAsync("DELETE FROM nex_compactor_meta WHERE meta_key=?", key)
+                .thenCompose(v -> db.updateAsync("INSERT INTO nex_compactor_meta (meta_key, meta_value) VALUES (?,?)", key, value))
                 .thenApply(rows -> null);
     }
 
+    boolean isLegacyFallback() {
+        return legacyFallback;
+    }
+
+    void markMigrated() {
+        legacyFallback = false;
+    }
+
+    // ===== Interning =====
+
+    /** Id des Compactors; legt sie bei Bedarf in der DB an. Erst nach dem Commit im Speicher sichtbar. */
+    private CompletableFuture<Integer> internCompactor(String name) {
+        Integer id = compactorIds.get(name);
+        if (id != null) return CompletableFuture.completedFuture(id);
+        return intern("c:" + name, () -> insertId(
+                "INSERT INTO nex_compactor_compactors (id, name) SELECT m.next, ? FROM "
+                        + "(SELECT COALESCE(MAX(id), 0) + 1 AS next FROM nex_compactor_compactors) m "
+                        + "WHERE NOT EXISTS (SELECT 1 FROM nex_compactor_compactors WHERE name=?)",
+                new Object[]{name, name},
+                "SELECT id FROM nex_compactor_compactors WHERE name=? ORDER BY id",
+                new Object[]{name}
+        ).thenApply(next -> {
+            compactorIds.putIfAbsent(name, next);
+            compactorNames.put(next, name);
+            return compactorIds.get(name);
+        }));
+    }
+
+    /** Bit-Index des Rezepts im Compactor (dicht ab 0), analog zu {@link #internCompactor}. */
+    private CompletableFuture<Integer> internRecipe(int compactor, String name) {
+        Integer id = recipeIds.getOrDefault(compactor, Map.of()).get(name);
+        if (id != null) return CompletableFuture.completedFuture(id);
+        return intern("r:" + compactor + ":" + name, () -> insertId(
+                "INSERT INTO nex_compactor_recipes (compactor, id, name) SELECT ?, m.next, ? FROM "
+                        + "(SELECT COALESCE(MAX(id) + 1, 0) AS next FROM nex_compactor_recipes WHERE compactor=?) m "
+                        + "WHERE NOT EXISTS (SELECT 1 FROM nex_compactor_recipes WHERE compactor=? AND name=?)",
+                new Object[]{compactor, name, compactor, compactor, name},
+                "SELECT id FROM nex_compactor_recipes WHERE compactor=? AND name=? ORDER BY id",
+                new Object[]{compactor, name}
+        ).thenApply(next -> {
+            Map<String, Integer> ids = recipeIds.computeIfAbsent(compactor, k -> new ConcurrentHashMap<>());
+            ids.putIfAbsent(name, next);
+            recipeNames.computeIfAbsent(compactor, k -> new ConcurrentHashMap<>()).put(next, name);
+            return ids.get(name);
+        }));
+    }
+
+    private CompletableFuture<Integer> intern(String key, Supplier<CompletableFuture<Integer>> insert) {
+        CompletableFuture<Integer> f = interning.computeIfAbsent(key, k -> insert.get());
+        // Fehlgeschlagene Internierung nicht merken => nächster Zugriff versucht es erneut
+        f.whenComplete((id, ex) -> interning.remove(key, f));
+        return f;
+    }
+
+    /**
+     * Insert-if-absent und danach die Id aus der DB lesen. Scheitert das Insert an einem parallelen
+     * Insert (anderer Server), liefert der Re-Read dessen Id; fehlt die Zeile danach, schlägt der Future fehl.
+     */
+    private CompletableFuture<Integer> insertId(String insertSql, Object[] insertParams, String selectSql, Object[] selectParams) {
+        return db.updateAsync(insertSql, insertParams)
+                .exceptionally(ex -> 0)
+                .thenCompose(rows -> db.queryAsync(selectSql, rs -> {
+                    try {
+                        return rs.getInt("id");
+                    } catch (SQLException e) {
+                        throw new RuntimeException(e);
+                    }
+                }, selectParams))
+                .thenApply(ids -> {
+                    if (ids.isEmpty()) throw new IllegalStateException("Could not intern id (" + Arrays.toString(selectParams) + ")");
+                    return ids.get(0);
+                });
+    }
+
+    // Von einem anderen Server vergebene Ids sind evtl. noch nicht geladen
+    private boolean isKnown(int compactor, byte[] mask) {
+        if (!compactorNames.containsKey(compactor)) return false;
+        if (mask == null) return true;
+        Map<Integer, String> names = recipeNames.getOrDefault(compactor, Map.of());
+        BitSet bits = BitSet.valueOf(mask);
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            if (!names.containsKey(i)) return false;
+        }
+        return true;
+    }
+
+    // ===== Laden =====
+
     public CompletableFuture<Map<String, Boolean>> loadStates(UUID player, String compactorId) {
+        CompletableFuture<Map<String, Boolean>> v2 = internCompactor(compactorId).thenCompose(compactor ->
+                db.queryAsync("SELECT mask FROM nex_compactor_state_v2 WHERE player=? AND compactor=?", rs -> {
+                    try {
+                        return rs.getBytes("mask");
+                    } catch (SQLException e) {
+                        throw new RuntimeException(e);
+                    }
+                }, toBytes(player), compactor).thenCompose(rows -> {
+                    if (rows.isEmpty()) return CompletableFuture.completedFuture(null);
+                    byte[] mask = rows.get(0);
+                    if (isKnown(compactor, mask)) return CompletableFuture.completedFuture(decode(compactor, mask));
+                    return loadIds().thenApply(v -> decode(compactor, mask));
+                }));
+
+        return v2.thenCompose(map -> {
+            if (map != null || !legacyFallback) {
+                return CompletableFuture.completedFuture(map == null ? new HashMap<>() : map);
+            }
+            return loadLegacy(player, compactorId);
+        });
+    }
+
+    /**
+     * Alle States eines Spielers über alle Compactors in einer Query.
+     * Ergebnis: compactorId -> (recipeId -> enabled); Compactors ohne Zeilen fehlen.
+     */
+    public CompletableFuture<Map<String, Map<String, Boolean>>> loadAllStates(UUID player) {
+        return loadAllStates(List.of(player))
+                .thenApply(all -> all.getOrDefault(player, new HashMap<>()));
+    }
+
+    /**
+     * Alle States mehrerer Spieler, eine Query pro Chunk von {@link #IN_CHUNK} Spielern.
+     * Ergebnis: player -> compactorId -> (recipeId -> enabled); Spieler ohne Zeilen fehlen.
+     */
+    public CompletableFuture<Map<UUID, Map<String, Map<String, Boolean>>>> loadAllStates(Collection<UUID> players) {
+        List<UUID> list = new ArrayList<>(new LinkedHashSet<>(players));
+        Map<UUID, Map<String, Map<String, Boolean>>> result = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += IN_CHUNK) {
+            List<UUID> chunk = list.subList(from, Math.min(list.size(), from + IN_CHUNK));
+            CompletableFuture<Void> f = loadMasks(chunk).thenCompose(rows -> {
+                boolean known = rows.stream().allMatch(row -> isKnown(row.compactor(), row.mask()));
+                return known ? CompletableFuture.completedFuture(rows) : loadIds().thenApply(v -> rows);
+            }).thenAccept(rows -> {
+                for (MaskRow row : rows) {
+                    String name = compactorNames.get(row.compactor());
+                    if (name == null) continue;
+                    result.computeIfAbsent(row.player(), k -> new ConcurrentHashMap<>())
+                            .put(name, decode(row.compactor(), row.mask()));
+                }
+            });
+            if (legacyFallback) {
+                // Nur Paare ohne v2-Zeile aus der alten Tabelle übernehmen
+                f = f.thenCompose(v -> loadLegacy(chunk)).thenAccept(legacy -> legacy.forEach((player, byCompactor) -> {
+                    Map<String, Map<String, Boolean>> target = result.computeIfAbsent(player, k -> new ConcurrentHashMap<>());
+                    byCompactor.forEach(target::putIfAbsent);
+                }));
+            }
+            chunks.add(f);
+        }
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).thenApply(v -> result);
+    }
+
+    private CompletableFuture<List<MaskRow>> loadMasks(List<UUID> players) {
+        String sql = "SELECT player, compactor, mask FROM nex_compactor_state_v2 WHERE player IN ("
+                + String.join(",", Collections.nCopies(players.size(), "?")) + ")";
+        Object[] params = players.stream().map(CompactorPlayerStateDao::toBytes).toArray();
+        return db.queryAsync(sql, rs -> {
+            try {
+                return new MaskRow(fromBytes(rs.getBytes("player")), rs.getInt("compactor"), rs.getBytes("mask"));
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }, params);
+    }
+
+    private CompletableFuture<Map<String, Boolean>> loadLegacy(UUID player, String compactorId) {
         String sql = "SELECT recipe_id, enabled FROM nex_compactor_state WHERE player_uuid=? AND compactor_id=?";
         return db.queryAsync(sql, rs -> {
             try {
-                // Mapper wird pro Zeile aufgerufen; wir geben hier ein Entry-ähnliches Result zurück
                 return Map.entry(rs.getString("recipe_id"), rs.getBoolean("enabled"));
             } catch (SQLException e) {
                 throw new RuntimeException(e);
@@ -50,27 +342,182 @@ public class CompactorPlayerStateDao {
         });
     }
 
-    public CompletableFuture<Void> saveState(UUID player, String compactorId, String recipeId, boolean enabled) {
-        String updateSql = "UPDATE nex_compactor_state SET enabled=? WHERE player_uuid=? AND compactor_id=? AND recipe_id=?";
-        String insertSql = "INSERT INTO nex_compactor_state (player_uuid, compactor_id, recipe_id, enabled) VALUES (?,?,?,?)";
+    /** Alte Zeilen mehrerer Spieler: player -> compactorId -> (recipeId -> enabled). */
+    CompletableFuture<Map<UUID, Map<String, Map<String, Boolean>>>> loadLegacy(List<UUID> players) {
+        String sql = "SELECT player_uuid, compactor_id, recipe_id, enabled FROM nex_compactor_state WHERE player_uuid IN ("
+                + String.join(",", Collections.nCopies(players.size(), "?")) + ")";
+        Object[] params = players.stream().map(UUID::toString).toArray();
+        return db.queryAsync(sql, rs -> {
+            try {
+                return new LegacyRow(UUID.fromString(rs.getString("player_uuid")), rs.getString("compactor_id"),
+                        rs.getString("recipe_id"), rs.getBoolean("enabled"));
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }, params).thenApply(rows -> {
+            Map<UUID, Map<String, Map<String, Boolean>>> result = new HashMap<>();
+            for (LegacyRow row : rows) {
+                result.computeIfAbsent(row.player(), k -> new HashMap<>())
+                        .computeIfAbsent(row.compactorId(), k -> new HashMap<>())
+                        .put(row.recipeId(), row.enabled());
+            }
+            return result;
+        });
+    }
 
-        return db.updateAsync(updateSql, enabled, player.toString(), compactorId, recipeId)
-                .thenCompose(rows -> {
-                    if (rows != null && rows > 0) {
-                        // explizit als Void typisieren
-                        return CompletableFuture.completedFuture(null);
-                    }
-                    // INSERT-Zweig als CompletableFuture<Void>
-                    return db.updateAsync(insertSql, player.toString(), compactorId, recipeId, enabled)
-                            .thenAccept(inserted -> { /* no-op */ });
-                })
-                .whenComplete((ignored, ex) -> {
-                    if (ex != null) {
-                        logger.error("Failed to save compactor state for player=" + player
-                                + ", compactor=" + compactorId
-                                + ", recipe=" + recipeId + ": " + ex.getMessage());
-                    }
-                });
+    // ===== Speichern =====
+
+    /**
+     * Übernimmt geänderte Toggles mehrerer (player, compactor)-Paare, je Paar eine Zeile.
+     * Die gespeicherte Maske wird gelesen und nur an den Bits der übergebenen Rezepte geändert;
+     * alle anderen Bits (deaktivierte oder nicht mehr konfigurierte Rezepte) bleiben erhalten.
+     * Aufrufer müssen Schreibvorgänge für dasselbe Paar serialisieren ({@link CompactorStateWriter}).
+     */
+    public CompletableFuture<Void> saveStates(Map<StateKey, Map<String, Boolean>> changes) {
+        List<CompletableFuture<Void>> writes = new ArrayList<>(changes.size());
+        changes.forEach((key, recipes) -> writes.add(internCompactor(key.compactorId()).thenCompose(compactor ->
+                loadBase(key.player(), key.compactorId(), compactor)
+                        .thenCompose(base -> apply(compactor, base, recipes))
+                        .thenCompose(mask -> upsertMask(key.player(), compactor, mask.toByteArray())))));
+        return CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new));
+    }
+
+    // Gespeicherte Maske; ohne v2-Zeile während der Migration der alte Stand
+    private CompletableFuture<BitSet> loadBase(UUID player, String compactorId, int compactor) {
+        return db.queryAsync("SELECT mask FROM nex_compactor_state_v2 WHERE player=? AND compactor=?", rs -> {
+            try {
+                return rs.getBytes("mask");
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }, toBytes(player), compactor).thenCompose(rows -> {
+            if (!rows.isEmpty()) {
+                byte[] mask = rows.get(0);
+                return CompletableFuture.completedFuture(mask == null ? new BitSet() : BitSet.valueOf(mask));
+            }
+            if (!legacyFallback) return CompletableFuture.completedFuture(new BitSet());
+            return loadLegacy(player, compactorId).thenCompose(legacy -> apply(compactor, new BitSet(), legacy));
+        });
+    }
+
+    // Setzt/löscht die Bits der übergebenen Rezepte; Ids erst nach erfolgreicher Internierung verwenden
+    private CompletableFuture<BitSet> apply(int compactor, BitSet mask, Map<String, Boolean> states) {
+        Map<String, CompletableFuture<Integer>> ids = new HashMap<>();
+        states.keySet().forEach(recipe -> ids.put(recipe, internRecipe(compactor, recipe)));
+        return CompletableFuture.allOf(ids.values().toArray(CompletableFuture[]::new)).thenApply(v -> {
+            states.forEach((recipe, on) -> mask.set(ids.get(recipe).join(), Boolean.TRUE.equals(on)));
+            return mask;
+        });
     }
 
-}
\ No newline at end of file
+    // Ids erst nach erfolgreicher Internierung verwenden
+    private CompletableFuture<Map.Entry<Integer, byte[]>> encode(String compactorId, Map<String, Boolean> states) {
+        return internCompactor(compactorId).thenCompose(compactor -> {
+            List<CompletableFuture<Integer>> bits = new ArrayList<>();
+            states.forEach((recipe, on) -> {
+                if (Boolean.TRUE.equals(on)) bits.add(internRecipe(compactor, recipe));
+            });
+            return CompletableFuture.allOf(bits.toArray(CompletableFuture[]::new)).thenApply(v -> {
+                BitSet mask = new BitSet();
+                bits.forEach(f -> mask.set(f.join()));
+                return Map.entry(compactor, mask.toByteArray());
+            });
+        });
+    }
+
+    /** Portabel ohne dialektabhängiges Upsert: UPDATE, sonst INSERT; jeder Schritt ist ein einzelnes Statement. */
+    private CompletableFuture<Void> upsertMask(UUID player, int compactor, byte[] mask) {
+        String updateSql = "UPDATE nex_compactor_state_v2 SET mask=? WHERE player=? AND compactor=?";
+        String insertSql = "INSERT INTO nex_compactor_state_v2 (player, compactor, mask) VALUES (?,?,?)";
+        byte[] playerBytes = toBytes(player);
+
+        return db.updateAsync(updateSql, mask, playerBytes, compactor).thenCompose(rows -> {
+            if (rows != null && rows > 0) return CompletableFuture.completedFuture(null);
+            // Keine Zeile (oder Treiber meldet unveränderte Zeilen als 0): INSERT, bei Konflikt nochmals UPDATE
+            return db.updateAsync(insertSql, playerBytes, compactor, mask)
+                    .<Void>thenApply(inserted -> null)
+                    .exceptionallyCompose(ex -> db.updateAsync(updateSql, mask, playerBytes, compactor)
+                            .thenCompose(updated -> updated != null && updated > 0
+                                    ? CompletableFuture.completedFuture(null)
+                                    : hasMask(playerBytes, compactor).thenApply(exists -> {
+                                        if (!exists) throw new CompletionException(ex);
+                                        return null;
+                                    })));
+        });
+    }
+
+    private CompletableFuture<Boolean> hasMask(byte[] player, int compactor) {
+        return db.queryAsync("SELECT compactor FROM nex_compactor_state_v2 WHERE player=? AND compactor=?", rs -> {
+            try {
+                return rs.getInt("compactor");
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }, player, compactor).thenApply(rows -> !rows.isEmpty());
+    }
+
+    /**
+     * Für die Migration: übernimmt alte States nur für Paare, die noch keine v2-Zeile haben
+     * (neuere Toggles über den v2-Pfad gewinnen).
+     */
+    CompletableFuture<Integer> insertMissing(Map<UUID, Map<String, Map<String, Boolean>>> legacy) {
+        if (legacy.isEmpty()) return CompletableFuture.completedFuture(0);
+        List<UUID> players = new ArrayList<>(legacy.keySet());
+        String insertSql = "INSERT INTO nex_compactor_state_v2 (player, compactor, mask) VALUES (?,?,?)";
+
+        return loadMasks(players).thenCompose(existing -> {
+            Set<Pair> present = new HashSet<>();
+            for (MaskRow row : existing) present.add(new Pair(row.player(), row.compactor()));
+
+            List<CompletableFuture<Integer>> inserts = new ArrayList<>();
+            legacy.forEach((player, byCompactor) -> byCompactor.forEach((compactorId, states) ->
+                    inserts.add(encode(compactorId, states).thenCompose(encoded -> {
+                        if (present.contains(new Pair(player, encoded.getKey()))) return CompletableFuture.completedFuture(0);
+                        // Ein paralleler Toggle kann die Zeile inzwischen angelegt haben => Konflikt ignorieren, unten prüfen
+                        return db.updateAsync(insertSql, toBytes(player), encoded.getKey(), encoded.getValue())
+                                .exceptionally(ex -> 0)
+                                .thenApply(rows -> rows != null && rows > 0 ? 1 : 0);
+                    }))));
+
+            return CompletableFuture.allOf(inserts.toArray(CompletableFuture[]::new))
+                    .thenCompose(v -> loadMasks(players))
+                    .thenApply(after -> {
+                        Set<Pair> written = new HashSet<>();
+                        for (MaskRow row : after) written.add(new Pair(row.player(), row.compactor()));
+                        legacy.forEach((player, byCompactor) -> byCompactor.keySet().forEach(compactorId -> {
+                            if (!written.contains(new Pair(player, compactorIds.get(compactorId)))) {
+                                throw new IllegalStateException("Could not migrate states of " + player + " / " + compactorId);
+                            }
+                        }));
+                        return inserts.stream().mapToInt(CompletableFuture::join).sum();
+                    });
+        });
+    }
+
+    // ===== Kodierung =====
+
+    // Nur aktivierte Rezepte tauchen auf; fehlende gelten wie bisher als deaktiviert
+    private Map<String, Boolean> decode(int compactor, byte[] mask) {
+        Map<String, Boolean> map = new HashMap<>();
+        if (mask == null) return map;
+        Map<Integer, String> names = recipeNames.getOrDefault(compactor, Map.of());
+        BitSet bits = BitSet.valueOf(mask);
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            String name = names.get(i);
+            if (name != null) map.put(name, true);
+        }
+        return map;
+    }
+
+    static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        return new UUID(buf.getLong(), buf.getLong());
+    }
+}
@@ -0,0 +1,83 @@
+package io.nexstudios.compactors.database;
+
+import io.nexstudios.nexus.bukkit.database.api.DbAsyncHelper;
+import io.nexstudios.nexus.bukkit.utils.NexusLogger;
+import lombok.RequiredArgsConstructor;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Hintergrund-Migration {@code nex_compactor_state} (eine Zeile pro Rezept) -> Schema v2.
+ * <p>
+ * Arbeitet seitenweise nach {@code player_uuid}; nach jeder Seite wird der letzte Spieler als Cursor in
+ * {@code nex_compactor_meta} gespeichert. Nach einem Neustart setzt die Migration dort fort. Bereits
+ * vorhandene v2-Zeilen werden nie überschrieben. Am Ende wird {@code schema_version} auf 2 gesetzt;
+ * die alte Tabelle bleibt als Backup bestehen.
+ */
+@RequiredArgsConstructor
+public final class CompactorStateMigration {
+
+    private static final String CURSOR_KEY = "migration_v2_cursor";
+    private static final int PAGE_PLAYERS = 100;
+
+    private final DbAsyncHelper db;
+    private final CompactorPlayerStateDao dao;
+    private final NexusLogger logger;
+
+    private volatile boolean stopped;
+    private volatile long migratedRows;
+
+    public void start() {
+        if (!dao.isLegacyFallback()) return;
+        dao.readMeta(CURSOR_KEY)
+                .thenCompose(cursor -> {
+                    if (cursor != null) logger.info("Resuming compactor state migration after player " + cursor + " ...");
+                    else logger.info("Migrating compactor states to schema v" + CompactorPlayerStateDao.SCHEMA_VERSION + " ...");
+                    return step(cursor == null ? "" : cursor);
+                })
+                .exceptionally(ex -> {
+                    logger.error("Compactor state migration paused: " + ex.getMessage() + " (will resume on next start)");
+                    return null;
+                });
+    }
+
+    /** Hält nach der aktuellen Seite an; der Cursor bleibt gespeichert. */
+    public void stop() {
+        stopped = true;
+    }
+
+    private CompletableFuture<Void> step(String cursor) {
+        if (stopped) return CompletableFuture.completedFuture(null);
+        String sql = "SELECT DISTINCT player_uuid FROM nex_compactor_state WHERE player_uuid > ? ORDER BY player_uuid LIMIT " + PAGE_PLAYERS;
+        return db.queryAsync(sql, rs -> {
+            try {
+                return rs.getString("player_uuid");
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }, cursor).thenCompose(page -> {
+            if (page.isEmpty()) return finish();
+            List<UUID> players = page.stream().map(UUID::fromString).toList();
+            String last = page.get(page.size() - 1);
+            return dao.loadLegacy(players)
+                    .thenCompose(dao::insertMissing)
+                    .thenCompose(rows -> {
+                        migratedRows += rows;
+                        return dao.writeMeta(CURSOR_KEY, last);
+                    })
+                    .thenCompose(v -> step(last));
+        });
+    }
+
+    private CompletableFuture<Void> finish() {
+        return dao.writeMeta("schema_version", String.valueOf(CompactorPlayerStateDao.SCHEMA_VERSION))
+                .thenRun(() -> {
+                    dao.markMigrated();
+                    logger.info("Compactor state migration finished (" + migratedRows + " player/compactor rows). "
+                            + "Table nex_compactor_state is no longer used and can be dropped.");
+                });
+    }
+}
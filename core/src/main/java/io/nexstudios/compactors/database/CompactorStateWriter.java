@@ -0,0 +1,143 @@
+package io.nexstudios.compactors.database;
+
+import io.nexstudios.nexus.bukkit.files.NexusFile;
+import io.nexstudios.nexus.bukkit.utils.NexusLogger;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-Behind-Queue für Recipe-Toggles.
+ * <p>
+ * Gepuffert werden nur die geänderten Rezepte je (player, compactor); mehrere Toggles ergeben so einen
+ * Eintrag mit dem jeweils letzten Wert pro Rezept. Ein Flush läuft im Intervall oder sobald die Queue
+ * die Batch-Größe erreicht und übergibt alle Einträge an {@link CompactorPlayerStateDao#saveStates(Map)}.
+ * Das ist kein Batch-Statement: je Eintrag wird die Zeile gelesen und einzeln per UPDATE (ggf. INSERT)
+ * geschrieben. Flushes laufen nacheinander; fehlgeschlagene Einträge kommen zurück in die Queue,
+ * neuere Toggles desselben Rezepts gewinnen dabei.
+ * Noch nicht geschriebene Werte werden über {@link #overlay} auf DB-Loads gelegt.
+ */
+public final class CompactorStateWriter {
+
+    private final CompactorPlayerStateDao dao;
+    private final NexusLogger logger;
+    private final int flushIntervalTicks;
+    private final int maxBatchSize;
+
+    private final ConcurrentHashMap<CompactorPlayerStateDao.StateKey, Map<String, Boolean>> pending = new ConcurrentHashMap<>();
+    // gerade in einem Flush befindliche Werte (für overlay, bis sie sicher in der DB sind)
+    private final ConcurrentHashMap<CompactorPlayerStateDao.StateKey, Map<String, Boolean>> inFlight = new ConcurrentHashMap<>();
+    private CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+    private BukkitTask task;
+
+    // Metriken: rowsWritten zählt upsertete (player, compactor)-Zeilen, nicht Statements
+    private volatile long flushes;
+    private volatile long rowsWritten;
+    private volatile long failures;
+    private volatile double lastFlushMs;
+    private volatile double avgFlushMs;
+
+    public record Stats(int queueDepth, int inFlight, long flushes, long rowsWritten, long failures,
+                        double lastFlushMs, double avgFlushMs) {}
+
+    public CompactorStateWriter(CompactorPlayerStateDao dao, NexusLogger logger, NexusFile settings) {
+        this.dao = dao;
+        this.logger = logger;
+        this.flushIntervalTicks = Math.max(1, settings.getInt("database.write-behind.flush-interval-ticks", 40));
+        this.maxBatchSize = Math.max(1, settings.getInt("database.write-behind.max-batch-size", 200));
+    }
+
+    public void start(Plugin plugin) {
+        if (task != null) return;
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::flush, flushIntervalTicks, flushIntervalTicks);
+    }
+
+    /** Merkt einen Toggle zum Schreiben vor; spätere Toggles desselben Rezepts überschreiben ihn. */
+    public void save(UUID player, String compactorId, String recipeId, boolean enabled) {
+        pending.merge(new CompactorPlayerStateDao.StateKey(player, compactorId), Map.of(recipeId, enabled), CompactorStateWriter::merge);
+        if (pending.size() >= maxBatchSize) {
+            flush();
+        }
+    }
+
+    /** Legt noch nicht geschriebene Toggles über einen frisch aus der DB geladenen State. */
+    public Map<String, Boolean> overlay(UUID player, String compactorId, Map<String, Boolean> loaded) {
+        if (pending.isEmpty() && inFlight.isEmpty()) return loaded;
+        CompactorPlayerStateDao.StateKey key = new CompactorPlayerStateDao.StateKey(player, compactorId);
+        Map<String, Boolean> flushing = inFlight.get(key);
+        Map<String, Boolean> queued = pending.get(key);
+        if (flushing == null && queued == null) return loaded;
+        Map<String, Boolean> merged = new HashMap<>(loaded);
+        if (flushing != null) merged.putAll(flushing);
+        if (queued != null) merged.putAll(queued); // neuere Werte gewinnen
+        return merged;
+    }
+
+    // Immutable Kopie: overlay liest die Maps ohne Lock
+    private static Map<String, Boolean> merge(Map<String, Boolean> older, Map<String, Boolean> newer) {
+        Map<String, Boolean> merged = new HashMap<>(older);
+        merged.putAll(newer);
+        return Map.copyOf(merged);
+    }
+
+    /** Schreibt alles Ausstehende, eine Zeile pro (player, compactor); Flushes werden hintereinander ausgeführt. */
+    public synchronized CompletableFuture<Void> flush() {
+        if (pending.isEmpty()) return chain;
+
+        Map<CompactorPlayerStateDao.StateKey, Map<String, Boolean>> batch = new LinkedHashMap<>();
+        for (CompactorPlayerStateDao.StateKey key : pending.keySet()) {
+            Map<String, Boolean> value = pending.remove(key);
+            if (value != null) batch.put(key, value);
+        }
+        if (batch.isEmpty()) return chain;
+        // Ein noch laufender Flush kann denselben Key halten => zusammenführen statt ersetzen
+        Map<CompactorPlayerStateDao.StateKey, Map<String, Boolean>> staged = new HashMap<>();
+        batch.forEach((key, changes) -> staged.put(key, inFlight.merge(key, changes, CompactorStateWriter::merge)));
+
+        chain = chain.thenCompose(ignored -> {
+            long start = System.nanoTime();
+            return dao.saveStates(batch).handle((ok, ex) -> {
+                double ms = (System.nanoTime() - start) / 1_000_000.0;
+                if (ex != null) {
+                    failures++;
+                    // zurück in die Queue; inzwischen neuere Toggles desselben Rezepts gewinnen
+                    batch.forEach((key, changes) -> pending.merge(key, changes, (newer, failed) -> merge(failed, newer)));
+                    logger.error("Failed to flush " + batch.size() + " compactor state row(s): " + ex.getMessage());
+                } else {
+                    flushes++;
+                    rowsWritten += batch.size();
+                    lastFlushMs = ms;
+                    avgFlushMs = flushes == 1 ? ms : avgFlushMs * 0.9 + ms * 0.1;
+                }
+                staged.forEach(inFlight::remove);
+                return null;
+            });
+        });
+        return chain;
+    }
+
+    /** Stoppt den Timer und schreibt synchron alles Ausstehende (Shutdown). */
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        try {
+            flush().get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            logger.error("Compactor state flush on shutdown failed, " + pending.size() + " state row(s) lost: " + e.getMessage());
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(pending.size(), inFlight.size(), flushes, rowsWritten, failures, lastFlushMs, avgFlushMs);
+    }
+}
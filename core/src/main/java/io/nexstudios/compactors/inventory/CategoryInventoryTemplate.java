@@ -0,0 +1,149 @@
+package io.nexstudios.compactors.inventory;
+
+import io.nexstudios.compactors.NexCompactors;
+import io.nexstudios.compactors.config.CompactorConfig;
+import io.nexstudios.nexus.bukkit.items.ItemHideFlag;
+import io.nexstudios.nexus.bukkit.platform.NexServices;
+import io.nexstudios.nexus.bukkit.utils.StringUtils;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Vorberechneter Stand des Kategorie-Menüs: sortierte, aktivierte Compactors, Filler-Grenzen aus
+ * inventories/category.yml und die Category-Items pro Locale.
+ * <p>
+ * Gebaut beim ersten Öffnen, neu gebaut, sobald die Registry einen neuen Compactor-Stand veröffentlicht
+ * (andere Map-Instanz) oder das Menü per Reload verworfen wird. Category-Items mit
+ * PlaceholderAPI-Platzhaltern ({@code %...%}, auch in verschachtelten Sections) hängen vom Spieler ab und
+ * werden weiter pro Öffnen gebaut; alle anderen werden je {@code player.locale()} einmal gebaut, da
+ * übersetzbare Texte im Item von der Locale des Spielers abhängen können.
+ */
+final class CategoryInventoryTemplate {
+
+    // generation zählt Invalidierungen: ein Load, der vor einem Reload begonnen hat, wird nicht mehr veröffentlicht
+    private record Holder(int generation, CategoryInventoryTemplate template) {}
+
+    private static final AtomicReference<Holder> current = new AtomicReference<>(new Holder(0, null));
+
+    private final Map<String, CompactorConfig> source; // Compactor-Map des Registry-Snapshots
+    final List<CompactorConfig> compactors;
+    final int startSlot;
+    final int endSlot;
+    private final boolean[] playerDependent;
+    private final Map<Locale, AtomicReferenceArray<ItemStack>> items = new ConcurrentHashMap<>(); // spielerunabhängige Items, lazy gebaut
+
+    private CategoryInventoryTemplate(Map<String, CompactorConfig> source, List<CompactorConfig> compactors,
+                                      int startSlot, int endSlot) {
+        this.source = source;
+        this.compactors = List.copyOf(compactors);
+        this.startSlot = startSlot;
+        this.endSlot = endSlot;
+        this.playerDependent = new boolean[this.compactors.size()];
+        for (int i = 0; i < playerDependent.length; i++) {
+            Map<String, Object> params = this.compactors.get(i).getCategoryItem();
+            playerDependent[i] = params != null && hasPlaceholders(params);
+        }
+    }
+
+    static CategoryInventoryTemplate get() {
+        Map<String, CompactorConfig> source = NexCompactors.getInstance().getCompactorRegistry().getCompactors();
+        Holder h = current.get();
+        CategoryInventoryTemplate t = h.template();
+        if (t != null && t.source == source) return t;
+        t = load(source);
+        current.compareAndSet(h, new Holder(h.generation(), t));
+        return t;
+    }
+
+    /** Beim Reload: category.yml neu lesen und alle Items verwerfen. */
+    static void invalidate() {
+        current.updateAndGet(h -> new Holder(h.generation() + 1, null));
+    }
+
+    /** Category-Items in Reihenfolge von {@link #compactors}; gecachte Items werden geklont. */
+    List<ItemStack> items(Player player) {
+        List<ItemStack> result = new ArrayList<>(compactors.size());
+        AtomicReferenceArray<ItemStack> cached = items.computeIfAbsent(player.locale(), k -> new AtomicReferenceArray<>(compactors.size()));
+        for (int i = 0; i < compactors.size(); i++) {
+            if (playerDependent[i]) {
+                result.add(build(compactors.get(i), player));
+                continue;
+            }
+            ItemStack item = cached.get(i);
+            if (item == null) {
+                // Ohne Platzhalter fließt nur die Locale des Spielers ins Item ein
+                item = build(compactors.get(i), player);
+                cached.compareAndSet(i, null, item);
+            }
+            result.add(item.clone());
+        }
+        return result;
+    }
+
+    private static ItemStack build(CompactorConfig cfg, Player player) {
+        TagResolver resolver = TagResolver.resolver(
+                Placeholder.unparsed("compactor_id", cfg.getId()),
+                Placeholder.unparsed("compactor", cfg.getName() != null ? cfg.getName() : cfg.getId())
+        );
+        ItemStack is = StringUtils.parseConfigItem(cfg.getCategoryItem(), resolver, player);
+        return NexServices.newItemBuilder()
+                .itemStack(is)
+                .hideFlags(Set.of(ItemHideFlag.HIDE_ENCHANTS, ItemHideFlag.HIDE_ATTRIBUTES))
+                .build();
+    }
+
+    // Rekursiv über verschachtelte Sections (Map bzw. ConfigurationSection), Listen und Arrays
+    private static boolean hasPlaceholders(Object value) {
+        if (value instanceof String s) return s.indexOf('%') >= 0;
+        if (value instanceof Map<?, ?> m) return hasPlaceholders(m.keySet()) || hasPlaceholders(m.values());
+        if (value instanceof ConfigurationSection sec) return hasPlaceholders(sec.getValues(false));
+        if (value instanceof Collection<?> c) {
+            for (Object v : c) {
+                if (hasPlaceholders(v)) return true;
+            }
+            return false;
+        }
+        if (value instanceof Object[] arr) return hasPlaceholders(Arrays.asList(arr));
+        return false;
+    }
+
+    private static CategoryInventoryTemplate load(Map<String, CompactorConfig> source) {
+        List<CompactorConfig> compactors = new ArrayList<>(source.values());
+        compactors.removeIf(cfg -> cfg == null || !cfg.isEnabled());
+        compactors.sort(Comparator
+                .comparing(CompactorConfig::getName, Comparator.nullsLast(String::compareToIgnoreCase))
+                .thenComparing(CompactorConfig::getId));
+
+        int startSlot = 11;
+        int endSlot = 35;
+
+        // Inventar-Datei "category.yml" suchen und Filler-Slots lesen
+        File file = NexCompactors.getInstance()
+                .getInventoryFiles()
+                .getFiles()
+                .stream()
+                .filter(mapFile -> mapFile.getName().equalsIgnoreCase("category.yml"))
+                .findFirst()
+                .orElse(null);
+
+        if (file != null) {
+            YamlConfiguration invConfig = YamlConfiguration.loadConfiguration(file);
+            ConfigurationSection fillerSection = invConfig.getConfigurationSection("content.extra-settings.filler");
+            if (fillerSection != null) {
+                startSlot = fillerSection.getInt("start-slot", startSlot);
+                endSlot = fillerSection.getInt("end-slot", endSlot);
+            }
+        }
+        return new CategoryInventoryTemplate(source, compactors, startSlot, endSlot);
+    }
+}
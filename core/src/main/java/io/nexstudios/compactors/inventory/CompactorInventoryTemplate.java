@@ -0,0 +1,255 @@
+package io.nexstudios.compactors.inventory;
+
+import io.nexstudios.compactors.NexCompactors;
+import io.nexstudios.compactors.config.RecipeConfig;
+import io.nexstudios.compactors.logic.PrototypeStore;
+import io.nexstudios.nexus.bukkit.items.ItemBuilder;
+import io.nexstudios.nexus.bukkit.items.ItemHideFlag;
+import io.nexstudios.nexus.bukkit.platform.NexServices;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.TextDecoration;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import net.kyori.adventure.translation.GlobalTranslator;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Geparstes inventories/compactor.yml plus vorgerenderte Rezept-Items.
+ * <p>
+ * Pro (Rezept, Locale) werden Basis-Item, aufgelöste Item-Namen und alle Zeilen ohne
+ * {@code <status>}/{@code <info>} einmal gerendert; pro Spieler bleiben nur diese beiden Platzhalter.
+ * Das Template wird beim ersten Öffnen gelesen und bei jedem Reload verworfen (samt Render-Cache).
+ */
+final class CompactorInventoryTemplate {
+
+    private static final MiniMessage MM = MiniMessage.miniMessage();
+
+    // Template + Generation als ein Wert: ein Load, der vor invalidate() begann, kann danach nicht mehr veröffentlichen
+    private record Holder(int generation, CompactorInventoryTemplate template) {}
+
+    private static final AtomicReference<Holder> current = new AtomicReference<>(new Holder(0, null));
+
+    final int startSlot;
+    final int endSlot;
+    private final String displayName;
+    private final List<String> lore;
+    private final boolean dynamicName;
+    private final boolean[] dynamicLore;
+    private final String infoUnlocked;
+    private final String infoLocked;
+    private final String statusEnabled;
+    private final String statusDisabled;
+
+    // Schlüssel über die Identität der RecipeConfig: geänderte Rezepte bekommen nach einem Reload neue Instanzen
+    private record Key(RecipeConfig recipe, Locale locale) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && k.recipe == recipe && k.locale.equals(locale);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(recipe) + locale.hashCode();
+        }
+    }
+
+    // null-Einträge (bzw. displayName == null) werden pro Spieler gerendert
+    private record Rendered(ItemStack base, TagResolver tags, Component displayName, Component[] lore) {}
+
+    private final Map<Key, Rendered> rendered = new ConcurrentHashMap<>();
+
+    private CompactorInventoryTemplate(int startSlot, int endSlot, String displayName, List<String> lore,
+                                       String infoUnlocked, String infoLocked, String statusEnabled, String statusDisabled) {
+        this.startSlot = startSlot;
+        this.endSlot = endSlot;
+        this.displayName = displayName;
+        this.lore = List.copyOf(lore);
+        this.dynamicName = isDynamic(displayName);
+        this.dynamicLore = new boolean[this.lore.size()];
+        for (int i = 0; i < dynamicLore.length; i++) dynamicLore[i] = isDynamic(this.lore.get(i));
+        this.infoUnlocked = infoUnlocked;
+        this.infoLocked = infoLocked;
+        this.statusEnabled = statusEnabled;
+        this.statusDisabled = statusDisabled;
+    }
+
+    /** Thread-sicher (auch vom asynchronen Menü-Aufbau). */
+    static CompactorInventoryTemplate get() {
+        Holder h = current.get();
+        if (h.template() != null) return h.template();
+        CompactorInventoryTemplate t = load();
+        // Nur veröffentlichen, wenn seit dem Start kein invalidate() kam; sonst gilt t nur für diesen Aufruf
+        current.compareAndSet(h, new Holder(h.generation(), t));
+        return t;
+    }
+
+    /** Beim Reload: Template und alle vorgerenderten Items verwerfen. */
+    static void invalidate() {
+        current.updateAndGet(h -> new Holder(h.generation() + 1, null));
+    }
+
+    /**
+     * Main-Thread: Required- und Result-Prototypen auflösen, bevor {@link #item} asynchron rendert.
+     * Das Rendern liest den {@link PrototypeStore} danach nur noch (kein Parser-Aufruf in Custom-Item-Plugins).
+     */
+    static void resolvePrototypes(List<RecipeConfig> recipes) {
+        for (RecipeConfig r : recipes) {
+            PrototypeStore.get(r.getRequired().getItem());
+            PrototypeStore.get(r.getResult().getItem());
+        }
+    }
+
+    /**
+     * Display-Item eines Rezepts: vorgerenderte Teile aus dem Cache, {@code <status>}/{@code <info>} frisch.
+     */
+    ItemStack item(RecipeConfig r, Locale locale, boolean enabled, boolean unlocked,
+                   Set<ItemHideFlag> hideFlags, boolean glow) {
+        Rendered pre = rendered.computeIfAbsent(new Key(r, locale), k -> render(r, locale));
+        TagResolver tags = null;
+
+        Component name = pre.displayName();
+        if (name == null) {
+            tags = playerTags(pre, enabled, unlocked);
+            name = deserialize(displayName, tags);
+        }
+        List<Component> lines = new ArrayList<>(pre.lore().length);
+        for (int i = 0; i < pre.lore().length; i++) {
+            Component line = pre.lore()[i];
+            if (line == null) {
+                if (tags == null) tags = playerTags(pre, enabled, unlocked);
+                line = deserialize(lore.get(i), tags);
+            }
+            lines.add(line);
+        }
+
+        var builder = NexServices.newItemBuilder()
+                .itemStack(pre.base().clone())
+                .amount(Math.max(1, r.getRequired().getAmount()))
+                .displayName(name)
+                .lore(lines)
+                .hideFlags(hideFlags);
+        if (glow) {
+            builder.enchantments(Map.of(Enchantment.FORTUNE, 1));
+        }
+        return builder.build();
+    }
+
+    private TagResolver playerTags(Rendered pre, boolean enabled, boolean unlocked) {
+        return TagResolver.resolver(
+                pre.tags(),
+                Placeholder.parsed("status", enabled ? statusEnabled : statusDisabled),
+                Placeholder.parsed("info", unlocked ? infoUnlocked : infoLocked)
+        );
+    }
+
+    private Rendered render(RecipeConfig r, Locale locale) {
+        TagResolver tags = TagResolver.resolver(
+                Placeholder.parsed("recipe", r.getName()),
+                Placeholder.parsed("required-amount", String.valueOf(r.getRequired().getAmount())),
+                Placeholder.parsed("required-item", itemName(r.getRequired().getItem(), locale)),
+                Placeholder.parsed("result-amount", String.valueOf(r.getResult().getAmount())),
+                Placeholder.parsed("result-item", itemName(r.getResult().getItem(), locale))
+        );
+        Component name = dynamicName ? null : deserialize(displayName, tags);
+        Component[] lines = new Component[lore.size()];
+        for (int i = 0; i < lines.length; i++) {
+            if (!dynamicLore[i]) lines[i] = deserialize(lore.get(i), tags);
+        }
+        // Filler-Item als result.item bauen (Amount setzt item(...))
+        ItemStack base = PrototypeStore.peek(r.getResult().getItem()).clone();
+        return new Rendered(base, tags, name, lines);
+    }
+
+    // Custom-Name unverändert, sonst der übersetzte Vanilla-Name in der Sprache des Spielers
+    private static String itemName(String key, Locale locale) {
+        ItemBuilder item = NexServices.newItemBuilder().itemStack(PrototypeStore.peek(key).clone());
+        Component name = item.build().displayName();
+        return PlainTextComponentSerializer.plainText().serialize(
+                item.hasCustomName() ? name : GlobalTranslator.render(name, locale));
+    }
+
+    private static Component deserialize(String line, TagResolver tags) {
+        return MM.deserialize(line, tags).decoration(TextDecoration.ITALIC, false);
+    }
+
+    private static boolean isDynamic(String line) {
+        return line != null && (line.contains("<status") || line.contains("<info"));
+    }
+
+    private static CompactorInventoryTemplate load() {
+        // Standard-Layout (Defaults, falls YAML fehlt)
+        int startSlot = 11;
+        int endSlot = 35;
+
+        // Lore/Name-Vorlagen (Defaults)
+        String displayNameTpl = "<#ffdc73><recipe> <dark_gray>Recipe";
+        List<String> loreTpl = List.of(
+                " ",
+                "<gray>Compactor Recipe",
+                "<gray>Converts <yellow><required-amount><gray>x <yellow><required-item>",
+                "<gray>into <yellow><result-amount><gray>x <yellow><result-item>.",
+                " ",
+                "<gray>Current Status: <status>",
+                " ",
+                "<info>"
+        );
+        String infoUnlocked = "<yellow>Left click to toggle status";
+        String infoLocked = "<red>You need to unlock this compactor";
+        String statusEnabled = "<green><bold>ENABLED<reset>";
+        String statusDisabled = "<red><bold>DISABLED<reset>";
+
+        // compactor.yml lesen
+        File file = NexCompactors.getInstance()
+                .getInventoryFiles()
+                .getFiles()
+                .stream()
+                .filter(mapFile -> mapFile.getName().equalsIgnoreCase("compactor.yml"))
+                .findFirst()
+                .orElse(null);
+
+        if (file != null) {
+            YamlConfiguration invConfig = YamlConfiguration.loadConfiguration(file);
+
+            // Filler-Slots
+            ConfigurationSection fillerSection =
+                    invConfig.getConfigurationSection("content.extra-settings.filler");
+            if (fillerSection != null) {
+                startSlot = fillerSection.getInt("start-slot", startSlot);
+                endSlot = fillerSection.getInt("end-slot", endSlot);
+            }
+
+            // Displayname + Lore für die Recipe-Items
+            ConfigurationSection itemSection =
+                    invConfig.getConfigurationSection("content.extra-settings.compactor-item");
+            if (itemSection != null) {
+                displayNameTpl = itemSection.getString("displayname", displayNameTpl);
+                List<String> loreFromConfig = itemSection.getStringList("lore");
+                if (!loreFromConfig.isEmpty()) {
+                    loreTpl = loreFromConfig;
+                }
+            }
+
+            // Lore-Infos (unlocked/locked/enabled/disabled)
+            ConfigurationSection loreInfoSection =
+                    invConfig.getConfigurationSection("content.extra-settings.lore-info");
+            if (loreInfoSection != null) {
+                infoUnlocked = loreInfoSection.getString("unlocked", infoUnlocked);
+                infoLocked = loreInfoSection.getString("locked", infoLocked);
+                statusEnabled = loreInfoSection.getString("enabled", statusEnabled);
+                statusDisabled = loreInfoSection.getString("disabled", statusDisabled);
+            }
+        }
+        return new CompactorInventoryTemplate(startSlot, endSlot, displayNameTpl, loreTpl,
+                infoUnlocked, infoLocked, statusEnabled, statusDisabled);
+    }
+}
@@ -0,0 +1,41 @@
+package io.nexstudios.compactors.inventory;
+
+/**
+ * Messwerte für das Öffnen des Compactor-Menüs.
+ * open = Zeit vom Aufruf bis {@code openFor(player)} (inkl. State-Load und asynchronem Aufbau),
+ * main = davon auf dem Main-Thread verbrachte Zeit (Permissions/Prototypen vorbereiten, Session anlegen, befüllen, öffnen).
+ */
+public final class MenuTimings {
+    private MenuTimings() {}
+
+    public record Stats(long opens, double avgOpenMs, double maxOpenMs, double avgMainMs, double maxMainMs) {}
+
+    private static long opens;
+    private static long totalOpenNanos;
+    private static long maxOpenNanos;
+    private static long totalMainNanos;
+    private static long maxMainNanos;
+
+    static synchronized void record(long openNanos, long mainNanos) {
+        opens++;
+        totalOpenNanos += openNanos;
+        maxOpenNanos = Math.max(maxOpenNanos, openNanos);
+        totalMainNanos += mainNanos;
+        maxMainNanos = Math.max(maxMainNanos, mainNanos);
+    }
+
+    public static synchronized Stats stats() {
+        double n = Math.max(1, opens);
+        return new Stats(opens,
+                totalOpenNanos / n / 1_000_000.0, maxOpenNanos / 1_000_000.0,
+                totalMainNanos / n / 1_000_000.0, maxMainNanos / 1_000_000.0);
+    }
+
+    public static synchronized void reset() {
+        opens = 0;
+        totalOpenNanos = 0;
+        maxOpenNanos = 0;
+        totalMainNanos = 0;
+        maxMainNanos = 0;
+    }
+}
@@ -0,0 +1,224 @@
+package io.nexstudios.compactors.logic;
+
+import io.nexstudios.nexus.bukkit.files.NexusFile;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+
+/**
+ * Zentrale, tick-getriebene Warteschlange für Compaction-Passes.
+ * <p>
+ * Statt pro Trigger einen eigenen {@code runTaskLater} zu erzeugen, landet jeder Spieler genau einmal
+ * in einer deduplizierten Queue. Weitere Trigger innerhalb des Delay-Fensters werden in den bestehenden
+ * Eintrag gefaltet (geänderte Item-Typen werden vereinigt). Ein einziger Repeating-Task arbeitet fällige
+ * Einträge pro Tick ab, älteste zuerst, bis das Zeitbudget des Ticks ({@code settings.yml}) verbraucht ist.
+ * Nicht erreichte Spieler bleiben in Reihenfolge in der Queue und kommen im nächsten Tick zuerst dran.
+ * Optional schrumpft das Budget, wenn die mittlere Tickzeit des Servers hoch ist. Nur Main-Thread.
+ */
+public final class CompactionScheduler {
+
+    private final CompactorManager manager;
+    private TickBudget budget = TickBudget.DEFAULT;
+    // Einfügereihenfolge == Alter (älteste zuerst)
+    private final LinkedHashMap<UUID, Entry> queue = new LinkedHashMap<>();
+    private BukkitTask task;
+
+    // Metriken
+    private long triggers;
+    private long coalesced;
+    private long passes;
+    private double avgLatencyMs;
+    private double maxLatencyMs;
+    private long rolledOverTicks;
+    private double lastTickMs;
+    private double effectiveBudgetMs = TickBudget.DEFAULT.budgetMs();
+
+    private static final class Entry {
+        final long enqueuedNanos = System.nanoTime();
+        long dueTick = Long.MAX_VALUE; // frühester Fälligkeits-Tick aller Teile
+        // pro Compactor eigener Delay und eigene geänderte Item-Typen
+        final Map<CompiledCompactor, Part> parts = new IdentityHashMap<>();
+    }
+
+    private static final class Part {
+        final long dueTick;
+        boolean full;
+        final Set<Material> changed = EnumSet.noneOf(Material.class);
+
+        Part(long dueTick) {
+            this.dueTick = dueTick;
+        }
+    }
+
+    /**
+     * Zeitbudget pro Tick für alle Passes zusammen.
+     * Adaptiv: ab {@code thresholdMs} mittlerer Tickzeit linear bis {@code minBudgetMs} (bei 50ms) verkleinert.
+     */
+    public record TickBudget(double budgetMs, boolean adaptive, double thresholdMs, double minBudgetMs) {
+        static final TickBudget DEFAULT = new TickBudget(2.0, true, 40.0, 0.5);
+
+        public static TickBudget from(NexusFile settings) {
+            double budgetMs = Math.max(0.1, settings.getDouble("compaction.tick-budget-ms", DEFAULT.budgetMs));
+            boolean adaptive = settings.getBoolean("compaction.adaptive-budget.enable", DEFAULT.adaptive);
+            double thresholdMs = settings.getDouble("compaction.adaptive-budget.tick-time-threshold-ms", DEFAULT.thresholdMs);
+            double minBudgetMs = settings.getDouble("compaction.adaptive-budget.min-budget-ms", DEFAULT.minBudgetMs);
+            return new TickBudget(budgetMs, adaptive, Math.min(thresholdMs, 49.0), Math.min(Math.max(0.05, minBudgetMs), budgetMs));
+        }
+
+        double effectiveMs(double avgTickMs) {
+            if (!adaptive || avgTickMs <= thresholdMs) return budgetMs;
+            double load = Math.min(1.0, (avgTickMs - thresholdMs) / (50.0 - thresholdMs));
+            return budgetMs - (budgetMs - minBudgetMs) * load;
+        }
+    }
+
+    public record Stats(int queueDepth, long triggers, long coalesced, long passes,
+                        double avgLatencyMs, double maxLatencyMs,
+                        double budgetMs, double lastTickMs, long rolledOverTicks) {}
+
+    CompactionScheduler(CompactorManager manager) {
+        this.manager = manager;
+    }
+
+    public void start(Plugin plugin) {
+        if (task != null) return;
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    public void configure(TickBudget budget) {
+        this.budget = budget;
+        this.effectiveBudgetMs = budget.budgetMs();
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        queue.clear();
+    }
+
+    /**
+     * Markiert den Spieler für alle Compactors des Triggers als dirty (jeweils mit deren Delay).
+     * changedType == null => voller Pass; sonst nur Compactors, die der Typ überhaupt betreffen kann.
+     * Der früheste Fälligkeits-Tick bleibt bestehen, spätere Trigger verlängern das Fenster nicht.
+     */
+    public void enqueue(Player player, TriggerIndex.Type trigger, Material changedType) {
+        TriggerIndex triggers = manager.getTriggerIndex();
+        for (CompiledCompactor cc : triggers.compactors(trigger)) {
+            if (changedType != null && !cc.isAffectedBy(changedType)) continue;
+            enqueue(player, cc, changedType, triggers.delayTicks(cc));
+        }
+    }
+
+    /** Voller Pass über alle Compactors mit festem Delay. */
+    public void enqueueAll(Player player, int delayTicks) {
+        for (CompiledCompactor cc : manager.getTriggerIndex().all()) {
+            enqueue(player, cc, null, delayTicks);
+        }
+    }
+
+    private void enqueue(Player player, CompiledCompactor cc, Material changedType, int delayTicks) {
+        if (player == null || !player.isOnline()) return;
+        triggers++;
+
+        Entry e = queue.get(player.getUniqueId());
+        if (e == null) {
+            e = new Entry();
+            queue.put(player.getUniqueId(), e);
+        }
+        Part part = e.parts.get(cc);
+        if (part == null) {
+            part = new Part(Bukkit.getCurrentTick() + Math.max(0, delayTicks));
+            e.parts.put(cc, part);
+            e.dueTick = Math.min(e.dueTick, part.dueTick);
+        } else {
+            coalesced++;
+        }
+        if (changedType == null) part.full = true;
+        else part.changed.add(changedType);
+    }
+
+    public void remove(UUID player) {
+        queue.remove(player);
+    }
+
+    private void tick() {
+        if (queue.isEmpty()) return;
+        long now = Bukkit.getCurrentTick();
+        effectiveBudgetMs = budget.effectiveMs(Bukkit.getAverageTickTime());
+        long start = System.nanoTime();
+        long deadline = start + (long) (effectiveBudgetMs * 1_000_000L);
+
+        // Mindestens ein Pass pro Tick, damit die Queue auch bei winzigem Budget nie verhungert
+        boolean first = true;
+        Iterator<Map.Entry<UUID, Entry>> it = queue.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<UUID, Entry> next = it.next();
+            Entry e = next.getValue();
+            if (e.dueTick > now) continue;
+            if (!first && System.nanoTime() >= deadline) {
+                rolledOverTicks++;
+                break;
+            }
+
+            Player player = Bukkit.getPlayer(next.getKey());
+            if (player == null || !player.isOnline()) {
+                it.remove();
+                continue;
+            }
+
+            first = false;
+            recordLatency((System.nanoTime() - e.enqueuedNanos) / 1_000_000.0);
+            passes++;
+            runDueParts(player, e, now);
+            // Compactors mit längerem Delay bleiben an ihrer Position in der Queue
+            if (e.parts.isEmpty()) it.remove();
+        }
+        lastTickMs = (System.nanoTime() - start) / 1_000_000.0;
+    }
+
+    private void runDueParts(Player player, Entry e, long now) {
+        long nextDue = Long.MAX_VALUE;
+        Iterator<Map.Entry<CompiledCompactor, Part>> parts = e.parts.entrySet().iterator();
+        while (parts.hasNext()) {
+            Map.Entry<CompiledCompactor, Part> p = parts.next();
+            Part part = p.getValue();
+            if (part.dueTick > now) {
+                nextDue = Math.min(nextDue, part.dueTick);
+                continue;
+            }
+            parts.remove();
+            manager.compact(player, p.getKey(), part.full ? null : part.changed);
+        }
+        e.dueTick = nextDue;
+    }
+
+    private void recordLatency(double ms) {
+        // gleitender Mittelwert, damit alte Spitzen langsam ausklingen
+        avgLatencyMs = passes == 0 ? ms : avgLatencyMs * 0.95 + ms * 0.05;
+        if (ms > maxLatencyMs) maxLatencyMs = ms;
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public Stats stats() {
+        return new Stats(queue.size(), triggers, coalesced, passes, avgLatencyMs, maxLatencyMs,
+                effectiveBudgetMs, lastTickMs, rolledOverTicks);
+    }
+
+    public void resetStats() {
+        triggers = 0;
+        coalesced = 0;
+        passes = 0;
+        avgLatencyMs = 0;
+        maxLatencyMs = 0;
+        rolledOverTicks = 0;
+    }
+}
@@ -7,6 +7,7 @@ import io.nexstudios.compactors.config.RecipeConfig;
 import io.nexstudios.compactors.config.RequiredConfig;
 import io.nexstudios.compactors.database.CompactorPlayerCache;
 import io.nexstudios.compactors.database.CompactorPlayerStateDao;
+import io.nexstudios.compactors.database.CompactorStateWriter;
 import io.nexstudios.nexus.bukkit.utils.NexusLogger;
 import lombok.RequiredArgsConstructor;
 import net.kyori.adventure.key.Key;
@@ -17,31 +18,40 @@ import org.bukkit.Sound;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.PlayerInventory;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RequiredArgsConstructor
 public class CompactorManager {
 
     private final NexCompactors plugin;
     private final NexusLogger logger;
-    private final Map<String, CompactorConfig> compactors;
+    // Configs, Pläne und Indizes; wird beim Reload als Ganzes getauscht
+    private final AtomicReference<CompactorSnapshot> snapshot;
     private final CompactorPlayerStateDao playerStateDao;
+    private final CompactorStateWriter stateWriter; // Write-Behind für Toggles
     private final CompactorPlayerCache playerCache; // Injected, bleibt über Reload bestehen
 
+    // Einzige Stelle, die Passes plant (ein Repeating-Task statt runTaskLater pro Trigger)
+    private final CompactionScheduler scheduler = new CompactionScheduler(this);
+
+    // Pro Spieler und Compactor: Index-Bitset der aktiven Rezepte (State an + Permissions erfüllt).
+    // Neu gebaut nur nach Toggle, Permission-Änderung oder Reload geänderter Compactors.
+    private final Map<UUID, Map<String, BitSet>> activeRecipes = new ConcurrentHashMap<>();
+
     // Rate-limit pro (player, compactorId): letzter Aufrufzeitpunkt in Nanosekunden
     private final Map<String, Long> lastFeedback = new HashMap<>();
 
     public Collection<CompactorConfig> getAllCompactors() {
-        return compactors.values();
+        return snapshot.get().compactors().values();
     }
 
     public Optional<CompactorConfig> getCompactor(String id) {
-        return Optional.ofNullable(compactors.get(id));
+        return Optional.ofNullable(snapshot.get().compactors().get(id));
     }
 
     public List<RecipeConfig> getRecipesInScope(CompactorConfig cfg, CompactorCommandEntry.Scope scope) {
@@ -56,14 +66,37 @@ public class CompactorManager {
         return base;
     }
 
+    // Eine Query über alle Compactors statt einer pro Compactor
     public void warmupPlayer(Player player) {
+        UUID uuid = player.getUniqueId();
+        playerStateDao.loadAllStates(uuid).thenAccept(all -> fillCache(uuid, all, null));
+    }
+
+    /** Mehrere Spieler vorwärmen (nach Reload): eine Query pro Chunk von Spielern. */
+    public void warmupPlayers(Collection<? extends Player> players) {
+        warmupPlayers(players, null);
+    }
+
+    /** Wie {@link #warmupPlayers(Collection)}, füllt aber nur die angegebenen Compactors (null => alle). */
+    public void warmupPlayers(Collection<? extends Player> players, Set<String> compactorIds) {
+        if (players.isEmpty() || (compactorIds != null && compactorIds.isEmpty())) return;
+        List<UUID> uuids = players.stream().map(Player::getUniqueId).toList();
+        uuids.forEach(playerCache::markOnline); // Einträge anlegen, solange die Spieler sicher online sind
+        playerStateDao.loadAllStates(uuids).thenAccept(all -> {
+            for (UUID uuid : uuids) {
+                fillCache(uuid, all.getOrDefault(uuid, Map.of()), compactorIds);
+            }
+        });
+    }
+
+    // Auch Compactors ohne DB-Zeilen bekommen einen (leeren) Eintrag, damit kein Einzel-Load mehr nötig ist
+    private void fillCache(UUID player, Map<String, Map<String, Boolean>> all, Set<String> only) {
         for (CompactorConfig cfg : getAllCompactors()) {
             if (!cfg.isEnabled()) continue;
-            loadStates(player.getUniqueId(), cfg.getId()).thenAccept(map -> {
-                if (map != null) {
-                    playerCache.putStates(player.getUniqueId(), cfg.getId(), map);
-                }
-            });
+            if (only != null && !only.contains(cfg.getId())) continue;
+            Map<String, Boolean> states = all.getOrDefault(cfg.getId(), Map.of());
+            playerCache.putStates(player, cfg.getId(), stateWriter.overlay(player, cfg.getId(), states));
+            invalidateActiveRecipes(player, cfg.getId());
         }
     }
 
@@ -81,111 +114,236 @@ public class CompactorManager {
     }
 
     private CompletableFuture<Map<String, Boolean>> loadStates(UUID player, String compactorId) {
-        return playerStateDao.loadStates(player, compactorId);
+        return playerStateDao.loadStates(player, compactorId)
+                .thenApply(map -> map == null ? null : stateWriter.overlay(player, compactorId, map));
     }
 
     public CompletableFuture<Void> setPlayerRecipeState(UUID player, String compactorId, String recipeId, boolean enabled) {
         playerCache.putState(player, compactorId, recipeId, enabled);
-        return playerStateDao.saveState(player, compactorId, recipeId, enabled);
+        invalidateActiveRecipes(player, compactorId);
+        // Cache ist sofort aktuell; die DB wird gebündelt im Hintergrund geschrieben (nur das geänderte Bit)
+        stateWriter.save(player, compactorId, recipeId, enabled);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    public void markOnline(UUID player) {
+        playerCache.markOnline(player);
+    }
+
+    // Offline-Einträge werden erst nach TTL verdrängt (schneller Rejoin bleibt warm)
+    public void markOffline(UUID player) {
+        playerCache.markOffline(player);
+    }
+
+    /** Ausstehende Toggles sofort schreiben (z.B. beim Quit). */
+    public CompletableFuture<Void> flushPendingStates() {
+        return stateWriter.flush();
+    }
+
+    public CompactionScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public TriggerIndex getTriggerIndex() {
+        return snapshot.get().triggerIndex();
+    }
+
+    /**
+     * Nach dem Tausch des Snapshots: Aktiv-Sets geänderter/entfernter Compactors verwerfen.
+     * Unveränderte Compactors behalten ihren Plan (gleiche Instanz) und damit auch ihre Aktiv-Sets.
+     */
+    public void onSnapshotChanged(Set<String> changedIds) {
+        if (changedIds.isEmpty()) return;
+        for (Map<String, BitSet> perCompactor : activeRecipes.values()) {
+            perCompactor.keySet().removeAll(changedIds);
+        }
     }
 
     public void tryCompactLater(Player player, int delayTicks) {
-        Bukkit.getScheduler().runTaskLater(plugin, () -> compactAllEligible(player), Math.max(0, delayTicks));
+        scheduler.enqueueAll(player, delayTicks);
     }
 
     public void compactAllEligible(Player player) {
-        for (CompactorConfig cfg : compactors.values()) {
-            if (!cfg.isEnabled()) continue;
-            applyCompactor(player, cfg);
+        for (CompiledCompactor cc : snapshot.get().compiled().values()) {
+            applyCompactor(player, cc, null);
         }
     }
 
-    private void applyCompactor(Player player, CompactorConfig cfg) {
-        List<RecipeConfig> enabledRecipes = cfg.getRecipes().stream()
-                .filter(RecipeConfig::isEnabled)
-                .toList();
-
-        if (enabledRecipes.isEmpty()) return;
+    /** Kann ein Item dieses Typs Input irgendeines aktivierten Rezepts sein? */
+    public boolean isRecipeInput(Material type) {
+        return type != null && snapshot.get().recipeIndex().isInput(type);
+    }
 
-        loadPlayerStates(player.getUniqueId(), cfg.getId()).thenAccept(states -> {
-            if (states == null) return;
-            Bukkit.getScheduler().runTask(plugin, () -> {
-                List<RecipeConfig> active = enabledRecipes.stream()
-                        .filter(r -> states.getOrDefault(r.getId(), false))
-                        .collect(Collectors.toList());
-                if (active.isEmpty()) return;
+    /**
+     * Pass über einen Compactor. changed == null => alle Rezepte; sonst nur Rezepte, deren Input
+     * zu einem der geänderten Item-Typen passt, plus alle Rezepte, die per Chaining davon abhängen.
+     */
+    public void compact(Player player, CompiledCompactor cc, Set<Material> changed) {
+        // vor einem Reload eingeplant und der Compactor wurde inzwischen geändert/entfernt
+        if (snapshot.get().compiled().get(cc.getId()) != cc) return;
+        if (changed == null) {
+            applyCompactor(player, cc, null);
+            return;
+        }
+        BitSet affected = cc.affectedBy(changed);
+        if (affected != null) applyCompactor(player, cc, affected);
+    }
 
-                active = active.stream()
-                        .filter(r -> hasAllPermissions(player, r.getPermissions()))
-                        .collect(Collectors.toList());
+    // affected == null => alle Rezepte des Compactors
+    private void applyCompactor(Player player, CompiledCompactor cc, BitSet affected) {
+        if (cc.isEmpty()) return;
 
-                if (active.isEmpty()) return;
+        // Warm: Aktiv-Set vorhanden => ohne State-Lookup direkt im aktuellen Tick (liegt im Tick-Budget des Schedulers)
+        boolean mainThread = Bukkit.isPrimaryThread();
+        BitSet active = cachedActiveRecipes(player.getUniqueId(), cc.getId());
+        if (active != null && mainThread) {
+            runPass(player, cc, active, affected);
+            return;
+        }
 
-                processInventory(player, cfg, active);
-            });
+        CompletableFuture<Map<String, Boolean>> future = loadPlayerStates(player.getUniqueId(), cc.getId());
+        // Fehlgeschlagener Load: getNow würde werfen und den Tick abbrechen => asynchroner Pfad (ignoriert ihn)
+        if (future.isDone() && !future.isCompletedExceptionally() && mainThread) {
+            Map<String, Boolean> states = future.getNow(null);
+            if (states != null) runPass(player, cc, activeRecipes(player, cc, states), affected);
+            return;
+        }
+        future.thenAccept(states -> {
+            if (states == null) return;
+            Bukkit.getScheduler().runTask(plugin, () -> runPass(player, cc, activeRecipes(player, cc, states), affected));
         });
     }
 
-    private boolean hasAllPermissions(Player player, List<String> perms) {
-        if (perms == null || perms.isEmpty()) return true;
-        for (String node : perms) {
-            if (node == null || node.isBlank()) continue;
-            if (!player.hasPermission(node)) return false;
-        }
-        return true;
+    private void runPass(Player player, CompiledCompactor cc, BitSet active, BitSet affected) {
+        if (active.isEmpty()) return;
+        CompiledRecipe[] ordered = orderActive(cc, active, affected);
+        if (ordered.length == 0) return;
+        processInventory(player, cc, ordered);
     }
 
-    private void processInventory(Player player, CompactorConfig cfg, List<RecipeConfig> recipes) {
-        Map<Integer, List<RecipeConfig>> byPrio = recipes.stream().collect(Collectors.groupingBy(RecipeConfig::getPriority));
-        List<Integer> prios = new ArrayList<>(byPrio.keySet());
-        Collections.sort(prios);
+    private BitSet cachedActiveRecipes(UUID player, String compactorId) {
+        Map<String, BitSet> perCompactor = activeRecipes.get(player);
+        return perCompactor == null ? null : perCompactor.get(compactorId);
+    }
 
-        List<RecipeConfig> ordered = new ArrayList<>();
-        Random rnd = new Random();
-        for (Integer p : prios) {
-            List<RecipeConfig> same = new ArrayList<>(byPrio.get(p));
-            Collections.shuffle(same, rnd);
-            ordered.addAll(same);
+    // Nur Main-Thread (Permission-Abfragen)
+    private BitSet activeRecipes(Player player, CompiledCompactor cc, Map<String, Boolean> states) {
+        CompactorSnapshot current = snapshot.get();
+        // Plan aus einem alten Snapshot (Reload dazwischen): Bit-Indizes passen nicht zum Cache
+        boolean stale = current.compiled().get(cc.getId()) != cc;
+        if (!stale) {
+            BitSet cached = cachedActiveRecipes(player.getUniqueId(), cc.getId());
+            if (cached != null) return cached;
         }
 
-        int craftsLeft = Math.max(1, cfg.getMaxCraftsPerCycle());
-        var inv = player.getInventory();
-
-        final int LRU_MAX = 16;
-        LinkedHashSet<String> seen = new LinkedHashSet<>();
+        CompiledRecipe[] all = cc.getRecipes();
+        BitSet active = new BitSet(all.length);
+        for (CompiledRecipe r : all) {
+            if (!states.getOrDefault(r.getId(), false)) continue;
+            if (!current.permissions().hasAll(player, r.getConfig())) continue;
+            active.set(r.getIndex());
+        }
+        if (!stale) {
+            activeRecipes.computeIfAbsent(player.getUniqueId(), k -> new ConcurrentHashMap<>()).put(cc.getId(), active);
+        }
+        return active;
+    }
 
-        while (craftsLeft-- > 0) {
-            boolean progressedAny = false;
+    /** Permission-Snapshot und Aktiv-Sets eines Spielers verwerfen (Join, Weltwechsel, Permission-Neuberechnung, Quit). */
+    public void invalidatePermissions(UUID player) {
+        snapshot.get().permissions().invalidate(player);
+        activeRecipes.remove(player);
+    }
 
-            for (RecipeConfig r : ordered) {
-                if (!canCraft(inv, r)) continue;
+    public void invalidateActiveRecipes(UUID player, String compactorId) {
+        Map<String, BitSet> perCompactor = activeRecipes.get(player);
+        if (perCompactor != null) perCompactor.remove(compactorId);
+    }
 
-                boolean crafted = applyOneCraftTransactional(inv, r, cfg, player);
-                if (crafted) {
-                    progressedAny = true;
-                }
+    /**
+     * Filtert den vorkompilierten Plan nach dem Aktiv-Set des Spielers und (optional) betroffenen Rezepten.
+     * Die Reihenfolge bleibt nach Priorität sortiert, innerhalb eines Prioritäts-Buckets
+     * wird gemischt, damit gleichrangige Rezepte fair abwechseln.
+     */
+    private CompiledRecipe[] orderActive(CompiledCompactor cc, BitSet active, BitSet affected) {
+        CompiledRecipe[] all = cc.getRecipes();
+        int[] starts = cc.getBucketStarts();
+        CompiledRecipe[] ordered = new CompiledRecipe[all.length];
+        int n = 0;
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int b = 0; b + 1 < starts.length; b++) {
+            int from = n;
+            for (int i = starts[b]; i < starts[b + 1]; i++) {
+                if (!active.get(i)) continue;
+                if (affected != null && !affected.get(i)) continue;
+                if (!all[i].isResultValid()) continue; // beim Laden gemeldet
+                ordered[n++] = all[i];
             }
-
-            if (!progressedAny) {
-                break;
+            for (int i = n - 1; i > from; i--) {
+                int j = from + rnd.nextInt(i - from + 1);
+                CompiledRecipe tmp = ordered[i];
+                ordered[i] = ordered[j];
+                ordered[j] = tmp;
             }
+        }
+        return n == ordered.length ? ordered : Arrays.copyOf(ordered, n);
+    }
 
-            String signature = signature(inv, ordered);
-            if (seen.contains(signature)) {
-                logger.error("Compactor loop detected for compactor '" + cfg.getId() + "'. Repeated inventory state encountered. Check config.");
-                break;
-            }
-            if (seen.size() >= LRU_MAX) {
-                var it = seen.iterator();
-                if (it.hasNext()) {
-                    it.next();
-                    it.remove();
+    /** Permission-AND über den Snapshot des Spielers. */
+    public boolean hasAllPermissions(Player player, RecipeConfig recipe) {
+        return snapshot.get().permissions().hasAll(player, recipe);
+    }
+
+    private void processInventory(Player player, CompiledCompactor cc, CompiledRecipe[] ordered) {
+        CompactorConfig cfg = cc.getConfig();
+        int craftsLeft = Math.max(1, cfg.getMaxCraftsPerCycle());
+        // Ein Scan pro Pass; alle Crafts laufen auf dem Snapshot
+        InventorySnapshot snap = InventorySnapshot.take(player.getInventory(), cc, ordered);
+
+        // Bulk: pro Rezept so viele Crafts wie der Einzelschritt-Pfad insgesamt schaffen würde.
+        // Teilen sich Rezepte Inputs, wechselt der Einzelschritt zwischen ihnen ab => dann kein Bulk.
+        boolean bulk = cfg.isBulkCrafting() && !snap.sharesInputs();
+        boolean chaining = cc.isChaining();
+        int maxPerRecipe = chaining ? craftsLeft : 1;
+        int[] crafted = bulk ? new int[ordered.length] : null;
+
+        // Der Plan ist topologisch sortiert und zyklenfrei (sonst ist Chaining aus):
+        // im Bulk-Modus reicht ein Sweep, außer ein Rezept wurde durch fehlenden Platz gebremst.
+        while (craftsLeft-- > 0) {
+            boolean progressedAny = false;
+            boolean blockedAny = false;
+
+            for (int r = 0; r < ordered.length; r++) {
+                CompiledRecipe recipe = ordered[r];
+                if (snap.count(r) < recipe.getRequiredAmount()) continue;
+
+                if (bulk) {
+                    int budget = maxPerRecipe - crafted[r];
+                    if (budget <= 0) continue;
+                    InventorySnapshot.BulkResult result = snap.craftBulk(r, budget);
+                    if (result.crafted() > 0) {
+                        crafted[r] += result.crafted();
+                        progressedAny = true;
+                    }
+                    if (result.noSpace()) {
+                        blockedAny = true;
+                        sendNoSpaceFeedback(player, cfg);
+                    }
+                    continue;
+                }
+
+                InventorySnapshot.CraftResult result = snap.craftOnce(r);
+                if (result == InventorySnapshot.CraftResult.CRAFTED) {
+                    progressedAny = true;
+                } else if (result == InventorySnapshot.CraftResult.NO_SPACE) {
+                    sendNoSpaceFeedback(player, cfg);
                 }
             }
-            seen.add(signature);
 
-            if (!cfg.isChainingEnabled()) break;
+            if (!progressedAny || !chaining) break;
+            if (bulk && !blockedAny) break;
         }
+        snap.flush();
     }
 
     private void sendNoSpaceFeedback(Player player, CompactorConfig cfg) {
@@ -211,165 +369,22 @@ public class CompactorManager {
         }
     }
 
-    private boolean canCraft(Inventory inv, RecipeConfig r) {
-        int have = countMatching(inv, r.getRequired());
-        return have >= r.getRequired().getAmount();
-    }
-
-    private int countMatching(Inventory inv, RequiredConfig req) {
-        int count = 0;
-        for (int i : storageSlots(inv)) {
-            ItemStack slot = inv.getItem(i);
-            if (slot == null || slot.getType().isAir()) continue;
-            if (ItemMatcher.matches(slot, req)) count += slot.getAmount();
-        }
-        return count;
-    }
-
-    private boolean applyOneCraftTransactional(Inventory inv, RecipeConfig r, CompactorConfig cfg, Player player) {
-        ItemStack out = ItemUtil.parseItem(r.getResult().getItem(), r.getResult().getAmount());
-        if (out.getType().isAir()) {
-            logger.warning("Compactor result item invalid for recipe '" + r.getId() + "'. Skipping craft.");
-            return false;
-        }
-
-        int toRemove = r.getRequired().getAmount();
-        List<SlotDelta> inputDeltas = new ArrayList<>();
-        for (int i : storageSlots(inv)) {
-            if (toRemove <= 0) break;
-            ItemStack slot = inv.getItem(i);
-            if (slot == null || slot.getType().isAir()) continue;
-            if (!ItemMatcher.matches(slot, r.getRequired())) continue;
-
-            int take = Math.min(slot.getAmount(), toRemove);
-            ItemStack original = slot.clone();
-            int newAmount = slot.getAmount() - take;
-            inputDeltas.add(new SlotDelta(i, original, newAmount <= 0 ? null : setAmountClone(original, newAmount)));
-            toRemove -= take;
-        }
-        if (toRemove > 0) {
-            return false;
-        }
-
-        List<SlotDelta> outputDeltas = simulatePlaceResultInStorage(inv, out);
-        if (outputDeltas == null) {
-            sendNoSpaceFeedback(player, cfg);
-            return false;
-        }
-
-        applyDeltas(inv, inputDeltas);
-        applyDeltas(inv, outputDeltas);
-        return true;
-    }
-
-    private static ItemStack setAmountClone(ItemStack base, int newAmount) {
-        ItemStack c = base.clone();
-        c.setAmount(newAmount);
-        return c;
-    }
-
-    private List<SlotDelta> simulatePlaceResultInStorage(Inventory inv, ItemStack result) {
-        int remaining = result.getAmount();
-        List<SlotDelta> deltas = new ArrayList<>();
-
-        // 1) vorhandene, kompatible Stacks auffüllen
-        for (int i : storageSlots(inv)) {
-            if (remaining <= 0) break;
-            ItemStack slot = inv.getItem(i);
-            if (slot == null || slot.getType().isAir()) continue;
-
-            if (!slot.isSimilar(result)) continue;
-            if (slot.getAmount() >= slot.getMaxStackSize()) continue;
-
-            int canAdd = Math.min(slot.getMaxStackSize() - slot.getAmount(), remaining);
-            if (canAdd <= 0) continue;
-
-            ItemStack before = slot.clone();
-            ItemStack after = slot.clone();
-            after.setAmount(slot.getAmount() + canAdd);
-            deltas.add(new SlotDelta(i, before, after));
-            remaining -= canAdd;
-        }
-
-        // 2) freie Slots belegen
-        for (int i : storageSlots(inv)) {
-            if (remaining <= 0) break;
-            ItemStack slot = inv.getItem(i);
-            if (slot != null && !slot.getType().isAir()) continue;
-
-            int place = Math.min(result.getMaxStackSize(), remaining);
-            ItemStack before = slot == null ? null : slot.clone();
-            ItemStack after = result.clone();
-            after.setAmount(place);
-            deltas.add(new SlotDelta(i, before, after));
-            remaining -= place;
-        }
-
-        if (remaining > 0) {
-            return null; // kein Platz in Storage
-        }
-        return deltas;
-    }
-
-    private void applyDeltas(Inventory inv, List<SlotDelta> deltas) {
-        for (SlotDelta d : deltas) {
-            inv.setItem(d.slot(), d.after());
-        }
-    }
-
-    // Signatur zählt jetzt via Prototyp + isSimilar (nutzt ItemMatcher-Proto-Cache)
-    private String signature(Inventory inv, List<RecipeConfig> relevant) {
-        Map<String, Integer> counts = new TreeMap<>();
-        Set<String> keys = new HashSet<>();
-        for (RecipeConfig r : relevant) {
-            keys.add(r.getRequired().getItem());
-            keys.add(r.getResult().getItem());
-        }
-        for (String k : keys) {
-            int c = 0;
-            ItemStack proto = ItemMatcher.getOrBuildProto(k);
-            if (  proto.getType().isAir()) {
-                counts.put(k, 0);
-                continue;
-            }
-            for (int i : storageSlots(inv)) {
-                ItemStack slot = inv.getItem(i);
-                if (slot == null || slot.getType().isAir()) continue;
-                if (slot.isSimilar(proto)) c += slot.getAmount();
-            }
-            counts.put(k, c);
-        }
-        return counts.toString();
-    }
-
-    private IntStream storageSlotsStream(Inventory inv) {
-        if (inv instanceof PlayerInventory) {
-            return IntStream.range(0, 36);
-        }
-        return IntStream.range(0, inv.getSize());
-    }
-
-    private Iterable<Integer> storageSlots(Inventory inv) {
-        return storageSlotsStream(inv).boxed().toList();
-    }
-
-    private record SlotDelta(int slot, ItemStack before, ItemStack after) {}
-
     public void runCompactorPass(Player player, CompactorConfig cfg) {
         if (player == null || cfg == null || !cfg.isEnabled()) return;
+        CompiledCompactor cc = snapshot.get().compiled().get(cfg.getId());
+        if (cc == null) return;
 
         Inventory inv = player.getInventory();
 
-        Map<String, Boolean> states = getCachedOrLoadStatesSync(player.getUniqueId(), cfg.getId());
-
-        List<RecipeConfig> recipes = cfg.getRecipes().stream()
-                .filter(RecipeConfig::isEnabled)
-                .filter(r -> states.getOrDefault(r.getId(), false))
-                .filter(r -> hasAllPermissions(player, r.getPermissions()))
-                .sorted(Comparator.comparingInt(RecipeConfig::getPriority))
-                .toList();
+        BitSet active = cachedActiveRecipes(player.getUniqueId(), cfg.getId());
+        if (active == null) {
+            active = activeRecipes(player, cc, getCachedOrLoadStatesSync(player.getUniqueId(), cfg.getId()));
+        }
 
-        for (RecipeConfig r : recipes) {
+        for (CompiledRecipe compiled : cc.getRecipes()) {
+            if (!active.get(compiled.getIndex())) continue;
+            if (!compiled.isResultValid()) continue; // beim Laden gemeldet
+            RecipeConfig r = compiled.getConfig();
             RequiredConfig required = r.getRequired();
             int perCraft = required.getAmount();
             if (perCraft <= 0) continue;
@@ -388,21 +403,12 @@ public class CompactorManager {
                 continue;
             }
 
-            String resKey = r.getResult().getItem();
-            int resPerCraft = Math.max(1, r.getResult().getAmount());
-            long totalOut = (long) resPerCraft * crafts;
+            long totalOut = (long) compiled.getResultAmount() * crafts;
 
-            ItemStack proto = ItemUtil.parseItem(resKey, 1);
-            if (proto.getType() == Material.AIR) {
-                logger.warning("[Compactor] Result item could not be parsed for recipe " + r.getId());
-                continue;
-            }
-
-            int maxStack = Math.max(1, proto.getMaxStackSize());
+            int maxStack = Math.max(1, compiled.getResultProto().getMaxStackSize());
             while (totalOut > 0) {
                 int part = (int) Math.min(maxStack, totalOut);
-                ItemStack give = proto.clone();
-                give.setAmount(part);
+                ItemStack give = compiled.newResultStack(part);
                 Map<Integer, ItemStack> leftovers = inv.addItem(give);
 
                 if (!leftovers.isEmpty()) {
@@ -418,44 +424,10 @@ public class CompactorManager {
         Map<String, Boolean> cached = playerCache.getStates(uuid, compactorId);
         if (cached != null) return cached;
         try {
-            return playerStateDao.loadStates(uuid, compactorId).join();
+            return loadStates(uuid, compactorId).join();
         } catch (Exception e) {
             logger.warning("Failed to load states synchronously for " + uuid + " / " + compactorId + ": " + e.getMessage());
             return Collections.emptyMap();
         }
     }
-
-    // ===== Helper für Trigger-Listener =====
-
-    public boolean anyOnPickupEnabled() {
-        return compactors.values().stream()
-                .anyMatch(c -> c.isEnabled() && c.getTriggers() != null && c.getTriggers().isOnPickup());
-    }
-
-    public boolean anyOnAddItemEnabled() {
-        return compactors.values().stream()
-                .anyMatch(c -> c.isEnabled() && c.getTriggers() != null && c.getTriggers().isOnAddItem());
-    }
-
-    public boolean anyOnAutopickupEnabled() {
-        return compactors.values().stream()
-                .anyMatch(c -> c.isEnabled() && c.getTriggers() != null &&
-                        (c.getTriggers().isOnAutoPickup() || safeIsOnAutoPickup(c)));
-    }
-
-    private boolean safeIsOnAutoPickup(CompactorConfig c) {
-        try {
-            return (boolean) c.getTriggers().getClass().getMethod("isOnAutoPickup").invoke(c.getTriggers());
-        } catch (Throwable ignored) {
-            return false;
-        }
-    }
-
-    public int resolveTriggerDelayTicks() {
-        return compactors.values().stream()
-                .filter(CompactorConfig::isEnabled)
-                .filter(c -> c.getTriggers() != null)
-                .mapToInt(c -> Math.max(0, c.getTriggers().getDelayTicks()))
-                .max().orElse(0);
-    }
 }
\ No newline at end of file
@@ -4,11 +4,15 @@ import lombok.RequiredArgsConstructor;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandSendEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 /**
- * Lädt die Compactor-States eines Spielers beim Join in den Cache
- * und hält sie bis zum Server-Stopp im Speicher.
+ * Lädt die Compactor-States eines Spielers beim Join in den Cache und markiert ihn
+ * beim Quit als offline (Verdrängung per TTL im {@code CompactorPlayerCache}).
+ * Verwirft Permission-Snapshots und Aktiv-Sets, wenn sich Permissions geändert haben können.
  */
 @RequiredArgsConstructor
 public class CompactorPlayerListener implements Listener {
@@ -17,6 +21,27 @@ public class CompactorPlayerListener implements Listener {
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onJoin(PlayerJoinEvent e) {
+        manager.markOnline(e.getPlayer().getUniqueId());
+        manager.invalidatePermissions(e.getPlayer().getUniqueId());
         manager.warmupPlayer(e.getPlayer());
     }
-}
\ No newline at end of file
+
+    // Permissions können weltabhängig sein
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChange(PlayerChangedWorldEvent e) {
+        manager.invalidatePermissions(e.getPlayer().getUniqueId());
+    }
+
+    // Wird nach einer Permission-Neuberechnung gesendet (z.B. durch Permission-Plugins)
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onCommandsSend(PlayerCommandSendEvent e) {
+        manager.invalidatePermissions(e.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        manager.invalidatePermissions(e.getPlayer().getUniqueId());
+        manager.markOffline(e.getPlayer().getUniqueId());
+        manager.flushPendingStates();
+    }
+}
@@ -0,0 +1,32 @@
+package io.nexstudios.compactors.logic;
+
+import io.nexstudios.compactors.config.CompactorConfig;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unveränderlicher Stand aller geladenen Compactors.
+ * Wird beim Laden/Reload komplett neu gebaut und per einem einzigen Referenz-Tausch veröffentlicht;
+ * laufende Tasks lesen bis zum Ende ihres Passes den Stand, den sie gesehen haben.
+ *
+ * @param compactors  compactorId -> Config (alle, auch deaktivierte)
+ * @param compiled    compactorId -> Ausführungsplan (nur aktivierte)
+ * @param fileHashes  compactorId -> SHA-256 der Quelldatei beim Laden
+ */
+public record CompactorSnapshot(Map<String, CompactorConfig> compactors,
+                                Map<String, CompiledCompactor> compiled,
+                                Map<String, String> fileHashes,
+                                RecipeIndex recipeIndex,
+                                TriggerIndex triggerIndex,
+                                PermissionSnapshots permissions) {
+
+    public static final CompactorSnapshot EMPTY = new CompactorSnapshot(Map.of(), Map.of(), Map.of(),
+            RecipeIndex.of(List.of()), TriggerIndex.of(List.of()), PermissionSnapshots.of(List.of()));
+
+    public CompactorSnapshot {
+        compactors = Map.copyOf(compactors);
+        compiled = Map.copyOf(compiled);
+        fileHashes = Map.copyOf(fileHashes);
+    }
+}
@@ -2,80 +2,95 @@ package io.nexstudios.compactors.logic;
 
 import io.nexstudios.compactors.NexCompactors;
 import io.papermc.paper.event.player.PlayerInventorySlotChangeEvent;
-import org.bukkit.Bukkit;
+import org.bukkit.Material;
 import org.bukkit.entity.Player;
-import org.bukkit.event.EventHandler;
+import org.bukkit.event.Event;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
-import org.bukkit.event.entity.EntityPickupItemEvent;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryType;
 import org.bukkit.event.player.PlayerAttemptPickupItemEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.PluginManager;
 
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Trigger mit Entprellung (Debounce) pro Spieler, ohne direkte CompactorConfig-Abhängigkeit.
- * Der Delay und die aktivierten Trigger-Flags werden aus allen geladenen Configs via CompactorManager aggregiert.
+ * Slot-Änderungen und Pickups merken sich nur den Item-Typ; der Pass prüft dann nur betroffene Rezepte.
+ * Items, die kein Rezept-Input sind (Rüstung, Tools, Essen, ...), planen gar keinen Pass.
+ * Handler werden nur für Trigger-Typen registriert, die laut {@link TriggerIndex} mindestens ein Compactor nutzt.
  */
 public final class CompactorTriggerListener implements Listener {
 
+    private static final int STORAGE_SLOTS = 36;
+
     private final NexCompactors plugin;
     private final CompactorManager manager;
-    private final Map<UUID, Long> lastScheduleTick = new ConcurrentHashMap<>();
 
     public CompactorTriggerListener(NexCompactors plugin, CompactorManager manager) {
         this.plugin = plugin;
         this.manager = manager;
     }
 
-    private void schedulePass(Player player) {
-        if (player == null || !player.isOnline()) return;
+    /** Registriert nur die Handler, deren Trigger-Typ aktuell von einem Compactor genutzt wird. */
+    public void register(PluginManager pm) {
+        TriggerIndex triggers = manager.getTriggerIndex();
+        if (triggers.serves(TriggerIndex.Type.PICKUP)) {
+            register(pm, PlayerAttemptPickupItemEvent.class, EventPriority.MONITOR, true, this::onAttemptPickup);
+        }
+        if (triggers.serves(TriggerIndex.Type.ADD_ITEM)) {
+            register(pm, PlayerInventorySlotChangeEvent.class, EventPriority.NORMAL, false, this::onPickup);
+        }
+        if (triggers.serves(TriggerIndex.Type.AUTOPICKUP)) {
+            register(pm, PlayerJoinEvent.class, EventPriority.MONITOR, false, this::onJoin);
+        }
+    }
 
-        int delayTicks = manager.resolveTriggerDelayTicks();
-        long now = Bukkit.getCurrentTick();
-        long nextAllowed = lastScheduleTick.getOrDefault(player.getUniqueId(), -1L) + delayTicks;
+    private <T extends Event> void register(PluginManager pm, Class<T> type, EventPriority priority,
+                                            boolean ignoreCancelled, Consumer<T> handler) {
+        EventExecutor executor = (listener, event) -> {
+            if (type.isInstance(event)) handler.accept(type.cast(event));
+        };
+        pm.registerEvent(type, this, priority, executor, plugin, ignoreCancelled);
+    }
 
-        if (now < nextAllowed) return;
-        lastScheduleTick.put(player.getUniqueId(), now);
+    // changedType == null => voller Pass; mehrere Trigger falten sich im Scheduler zusammen
+    private void schedulePass(Player player, TriggerIndex.Type trigger, Material changedType) {
+        manager.getScheduler().enqueue(player, trigger, changedType);
+    }
 
-        Bukkit.getScheduler().runTaskLater(plugin, () -> manager.compactAllEligible(player), delayTicks);
+    // Nur Items, die Input eines aktivierten Rezepts sein können, lösen überhaupt etwas aus
+    private Material relevantType(ItemStack stack) {
+        if (stack == null || stack.getType().isAir()) return null;
+        return manager.isRecipeInput(stack.getType()) ? stack.getType() : null;
     }
 
-    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
     public void onAttemptPickup(PlayerAttemptPickupItemEvent e) {
-        if (!manager.anyOnPickupEnabled()) return;
-        schedulePass(e.getPlayer());
+        Material type = relevantType(e.getItem().getItemStack());
+        if (type == null) return;
+        schedulePass(e.getPlayer(), TriggerIndex.Type.PICKUP, type);
     }
 
-    @EventHandler
     public void onPickup(PlayerInventorySlotChangeEvent e) {
-        if (!manager.anyOnAddItemEnabled()) return;
-        schedulePass(e.getPlayer());
-    }
-
-    // Verhindere Doppeltrigger: ignorieren, wenn es ein Spieler ist (AttemptPickup deckt den Fall bereits ab)
-    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
-    public void onEntityPickup(EntityPickupItemEvent e) {
-        if (!manager.anyOnPickupEnabled()) return;
-        if (e.getEntity() instanceof Player) return;
+        // Rüstung/Offhand (Slot >= 36) wird nie kompaktiert
+        if (e.getSlot() >= STORAGE_SLOTS) return;
+        Material type = relevantType(e.getNewItemStack());
+        if (type == null) return;
+        schedulePass(e.getPlayer(), TriggerIndex.Type.ADD_ITEM, type);
     }
 
-    // @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    // Aktuell nicht registriert
     public void onInventoryClick(InventoryClickEvent e) {
-        if (!manager.anyOnAddItemEnabled()) return;
         if (!(e.getWhoClicked() instanceof Player p)) return;
         if (e.getClickedInventory() == null) return;
         if (e.getClickedInventory().getType() != InventoryType.PLAYER) return;
-        schedulePass(p);
+        schedulePass(p, TriggerIndex.Type.ADD_ITEM, null);
     }
 
-    @EventHandler(priority = EventPriority.MONITOR)
     public void onJoin(PlayerJoinEvent e) {
-        if (!manager.anyOnAutopickupEnabled()) return;
-        schedulePass(e.getPlayer());
+        schedulePass(e.getPlayer(), TriggerIndex.Type.AUTOPICKUP, null);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,201 @@
+package io.nexstudios.compactors.logic;
+
+import io.nexstudios.compactors.config.CompactorConfig;
+import io.nexstudios.compactors.config.RecipeConfig;
+import lombok.Getter;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Vorkompilierter Ausführungsplan eines Compactors.
+ * Wird einmalig beim Laden gebaut: nur aktivierte Rezepte, sortiert nach Priorität. Mit Chaining
+ * werden abhängige Rezepte per {@link RecipeGraph} so umsortiert, dass Erzeuger vor Verbrauchern
+ * stehen; unabhängige Rezepte behalten die Prioritäts-Reihenfolge. Aufeinanderfolgende Rezepte
+ * gleicher Priorität ohne Abhängigkeit untereinander bilden einen Bucket, dessen Grenzen
+ * in {@link #bucketStarts} stehen.
+ */
+@Getter
+public final class CompiledCompactor {
+
+    private final CompactorConfig config;
+    private final String id;
+    private final CompiledRecipe[] recipes;
+    // Startindex je Bucket; letzter Eintrag == recipes.length
+    private final int[] bucketStarts;
+    private final RecipeGraph graph;
+    // Chaining laut Config und nur, wenn der Graph zyklenfrei ist
+    private final boolean chaining;
+    private final RecipeIndex index;
+    // Material eines geänderten Slots -> Rezepte mit passendem Input plus alles, was per Chaining folgt
+    private final EnumMap<Material, BitSet> affectedByMaterial;
+
+    private CompiledCompactor(CompactorConfig config, CompiledRecipe[] recipes, int[] bucketStarts, RecipeGraph graph) {
+        this.config = config;
+        this.id = config.getId();
+        this.recipes = recipes;
+        this.bucketStarts = bucketStarts;
+        this.graph = graph;
+        this.chaining = config.isChainingEnabled() && !graph.hasCycles();
+        this.index = RecipeIndex.of(List.of(this));
+        this.affectedByMaterial = buildAffected();
+    }
+
+    /** Ids der Rezepte, deren Ergebnis-Item beim Laden nicht aufgelöst werden konnte. */
+    public List<String> invalidResults() {
+        List<String> ids = new ArrayList<>();
+        for (CompiledRecipe r : recipes) {
+            if (!r.isResultValid()) ids.add(r.getId());
+        }
+        return ids;
+    }
+
+    /** Ids der Rezepte ohne Index-Material: Required-Item (noch) nicht auflösbar, daher nie ein Kandidat. */
+    public List<String> unindexedRecipes() {
+        List<String> ids = new ArrayList<>();
+        for (CompiledRecipe r : recipes) {
+            if (r.getIndexMaterial() == null) ids.add(r.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * true, wenn ein beim Kompilieren fehlender Prototyp (Required oder Result) inzwischen auflösbar ist.
+     * Geht über den {@link PrototypeStore}, fehlende Keys werden also höchstens einmal pro Retry-Intervall geparst.
+     */
+    public boolean hasNewlyResolved() {
+        for (CompiledRecipe r : recipes) {
+            if (r.getIndexMaterial() == null && r.getMatcher().indexMaterial() != null) return true;
+            if (!r.isResultValid() && !PrototypeStore.get(r.getConfig().getResult().getItem()).getType().isAir()) return true;
+        }
+        return false;
+    }
+
+    public static CompiledCompactor compile(CompactorConfig cfg) {
+        List<CompiledRecipe> enabled = new ArrayList<>();
+        for (RecipeConfig r : cfg.getRecipes()) {
+            if (r.isEnabled()) enabled.add(new CompiledRecipe(enabled.size(), r));
+        }
+        // Kanten über die kompilierten Matcher; Knoten = Position in 'enabled'
+        RecipeGraph graph = RecipeGraph.build(enabled);
+        int[] order = cfg.isChainingEnabled() ? graph.order() : priorityOrder(enabled);
+
+        CompiledRecipe[] recipes = new CompiledRecipe[order.length];
+        List<Integer> starts = new ArrayList<>();
+        int bucketFrom = 0;
+        for (int i = 0; i < recipes.length; i++) {
+            if (i == 0 || !sameBucket(graph, enabled, order, bucketFrom, i)) {
+                starts.add(i);
+                bucketFrom = i;
+            }
+            recipes[i] = enabled.get(order[i]).withIndex(i);
+        }
+        starts.add(recipes.length);
+
+        int[] bucketStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+        return new CompiledCompactor(cfg, recipes, bucketStarts, graph);
+    }
+
+    private EnumMap<Material, BitSet> buildAffected() {
+        // direkte Nachfolger: Rezepte, deren Matcher das Ergebnis von r akzeptiert
+        BitSet[] next = new BitSet[recipes.length];
+        for (CompiledRecipe r : recipes) {
+            BitSet b = new BitSet(recipes.length);
+            ItemStack out = r.getResultProto();
+            if (!out.getType().isAir()) {
+                for (RecipeIndex.RecipeRef ref : candidates(out.getType())) {
+                    if (ref.recipe().getMatcher().test(out)) b.set(ref.recipe().getIndex());
+                }
+            }
+            next[r.getIndex()] = b;
+        }
+
+        // transitive Hülle je Rezept (inkl. sich selbst)
+        BitSet[] closure = new BitSet[recipes.length];
+        for (int i = 0; i < recipes.length; i++) {
+            BitSet seen = new BitSet(recipes.length);
+            Deque<Integer> queue = new ArrayDeque<>();
+            seen.set(i);
+            queue.add(i);
+            while (!queue.isEmpty()) {
+                BitSet succ = next[queue.poll()];
+                for (int q = succ.nextSetBit(0); q >= 0; q = succ.nextSetBit(q + 1)) {
+                    if (!seen.get(q)) {
+                        seen.set(q);
+                        queue.add(q);
+                    }
+                }
+            }
+            closure[i] = seen;
+        }
+
+        EnumMap<Material, BitSet> affected = new EnumMap<>(Material.class);
+        for (Material m : index.inputMaterials()) {
+            BitSet b = new BitSet(recipes.length);
+            for (RecipeIndex.RecipeRef ref : candidates(m)) {
+                b.or(closure[ref.recipe().getIndex()]);
+            }
+            affected.put(m, b);
+        }
+        return affected;
+    }
+
+    private List<RecipeIndex.RecipeRef> candidates(Material type) {
+        List<RecipeIndex.RecipeRef> refs = new ArrayList<>();
+        refs.addAll(Arrays.asList(index.vanillaInputs(type)));
+        refs.addAll(Arrays.asList(index.customInputs(type)));
+        return refs;
+    }
+
+    /**
+     * Rezepte, die von geänderten Items dieser Typen betroffen sein können
+     * (direkt oder per Chaining). null, wenn kein Rezept betroffen ist.
+     */
+    public BitSet affectedBy(Set<Material> changed) {
+        BitSet result = null;
+        for (Material m : changed) {
+            BitSet b = affectedByMaterial.get(m);
+            if (b == null) continue;
+            if (result == null) result = new BitSet(recipes.length);
+            result.or(b);
+        }
+        return result;
+    }
+
+    /** Kann ein geändertes Item dieses Typs irgendein Rezept des Compactors betreffen? */
+    public boolean isAffectedBy(Material changed) {
+        return affectedByMaterial.containsKey(changed);
+    }
+
+    // Stabil nach Priorität (ohne Chaining wie vor dem Abhängigkeitsgraphen)
+    private static int[] priorityOrder(List<CompiledRecipe> enabled) {
+        return IntStream.range(0, enabled.size()).boxed()
+                .sorted(Comparator.comparingInt(v -> enabled.get(v).getPriority()))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    // Gleiche Priorität und keine Abhängigkeit zu einem Rezept des Buckets => Mischen bleibt topologisch gültig
+    private static boolean sameBucket(RecipeGraph graph, List<CompiledRecipe> enabled, int[] order, int from, int i) {
+        int v = order[i];
+        if (enabled.get(v).getPriority() != enabled.get(order[from]).getPriority()) return false;
+        for (int j = from; j < i; j++) {
+            if (graph.dependsOn(v, order[j]) || graph.dependsOn(order[j], v)) return false;
+        }
+        return true;
+    }
+
+    public boolean isCyclic() {
+        return graph.hasCycles();
+    }
+
+    public boolean isEmpty() {
+        return recipes.length == 0;
+    }
+
+    public int size() {
+        return recipes.length;
+    }
+}
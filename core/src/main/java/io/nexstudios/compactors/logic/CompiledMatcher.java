@@ -0,0 +1,229 @@
+package io.nexstudios.compactors.logic;
+
+import io.nexstudios.compactors.config.MatcherConfig;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Vorkompilierter Matcher für ein Required-Item.
+ * <p>
+ * Wird beim Parsen aus {@link MatcherConfig} gebaut: der Typ-String wird genau einmal ausgewertet,
+ * Materials sind aufgelöst und Lore-Needles dedupliziert. Aufrufer prüfen nur noch {@link #test(ItemStack)}.
+ */
+public sealed interface CompiledMatcher
+        permits CompiledMatcher.MaterialMatcher, CompiledMatcher.PrototypeMatcher,
+        CompiledMatcher.MetaMatcher, CompiledMatcher.Combined, CompiledMatcher.Never {
+
+    boolean test(ItemStack stack);
+
+    /** Material, das ein passender Stack haben muss (für den Rezept-Index); null => unbekannt/nie. */
+    Material indexMaterial();
+
+    static CompiledMatcher compile(String itemKey, MatcherConfig m) {
+        if (m == null) {
+            // Standard: Prototyp-/isSimilar-Vergleich, Amount wird ignoriert
+            return new PrototypeMatcher(itemKey);
+        }
+        String type = m.getType() == null ? "MATERIAL" : m.getType().toUpperCase(Locale.ROOT);
+        if ("MATERIAL".equals(type)) {
+            return material(CompiledRecipe.resolveMaterial(itemKey));
+        }
+
+        // Für alle anderen Typen: erst Basismatch (minecraft => Material, sonst => Prototyp/isSimilar)
+        CompiledMatcher base = CompiledRecipe.isVanillaKey(itemKey)
+                ? material(CompiledRecipe.resolveMaterial(itemKey))
+                : new PrototypeMatcher(itemKey);
+
+        return switch (type) {
+            case "NAME" -> new Combined(base, new MetaMatcher[]{ name(m.getName()) });
+            case "LORE" -> new Combined(base, new MetaMatcher[]{ lore(m.getLoreContains()) });
+            case "CUSTOM_MODEL_DATA" -> new Combined(base, new MetaMatcher[]{ cmd(m.getCustomModelData()) });
+            case "COMBINED" -> {
+                List<MetaMatcher> parts = new ArrayList<>(3);
+                if (m.getName() != null) parts.add(name(m.getName()));
+                if (m.getLoreContains() != null && !m.getLoreContains().isEmpty()) parts.add(lore(m.getLoreContains()));
+                if (m.getCustomModelData() != null) parts.add(cmd(m.getCustomModelData()));
+                // NBT: Platzhalter
+                yield new Combined(base, parts.toArray(MetaMatcher[]::new));
+            }
+            // NBT: Platzhalter – aktuell Basismatch ausreichend
+            default -> new Combined(base, new MetaMatcher[0]);
+        };
+    }
+
+    private static CompiledMatcher material(Material material) {
+        return material == null ? Never.INSTANCE : new MaterialMatcher(material);
+    }
+
+    private static MetaMatcher name(String expected) {
+        return expected == null ? NeverMeta.INSTANCE : new NameMatcher(expected);
+    }
+
+    private static MetaMatcher lore(List<String> needles) {
+        if (needles == null) needles = List.of();
+        // Duplikate raus, längere Needles zuerst (selektiver, früherer Abbruch)
+        String[] unique = new LinkedHashSet<>(needles).stream()
+                .filter(n -> n != null)
+                .sorted(Comparator.comparingInt(String::length).reversed())
+                .toArray(String[]::new);
+        return new LoreMatcher(unique);
+    }
+
+    private static MetaMatcher cmd(Integer cmd) {
+        return cmd == null ? NeverMeta.INSTANCE : new CmdMatcher(cmd);
+    }
+
+    // ===== Basis-Matcher =====
+
+    record MaterialMatcher(Material material) implements CompiledMatcher {
+        @Override
+        public boolean test(ItemStack stack) {
+            return stack.getType() == material;
+        }
+
+        @Override
+        public Material indexMaterial() {
+            return material;
+        }
+    }
+
+    /**
+     * Prototyp wird beim ersten Zugriff aufgelöst (Custom-Items sind beim Parsen evtl. noch nicht geladen)
+     * und pro {@link PrototypeStore}-Generation gemerkt, damit ein Reload auch diesen Matcher auffrischt.
+     */
+    final class PrototypeMatcher implements CompiledMatcher {
+        private record Resolved(ItemStack proto, int generation) {}
+
+        private final String key;
+        private volatile Resolved resolved;
+
+        PrototypeMatcher(String key) {
+            this.key = key;
+        }
+
+        public ItemStack prototype() {
+            Resolved r = resolved;
+            int generation = PrototypeStore.generation();
+            if (r != null && r.generation() == generation) return r.proto();
+            ItemStack p = PrototypeStore.get(key);
+            if (p.getType() != Material.AIR) resolved = new Resolved(p, generation);
+            return p;
+        }
+
+        @Override
+        public boolean test(ItemStack stack) {
+            ItemStack p = prototype();
+            return p.getType() != Material.AIR && stack.isSimilar(p);
+        }
+
+        @Override
+        public Material indexMaterial() {
+            Material type = prototype().getType();
+            return type.isAir() ? null : type;
+        }
+    }
+
+    record Never() implements CompiledMatcher {
+        static final Never INSTANCE = new Never();
+
+        @Override
+        public boolean test(ItemStack stack) {
+            return false;
+        }
+
+        @Override
+        public Material indexMaterial() {
+            return null;
+        }
+    }
+
+    // ===== Meta-Matcher (werden nur hinter einem Basismatch ausgewertet) =====
+
+    sealed interface MetaMatcher extends CompiledMatcher
+            permits NameMatcher, LoreMatcher, CmdMatcher, NeverMeta {
+
+        @Override
+        default Material indexMaterial() {
+            return null;
+        }
+    }
+
+    /** Name/Lore kommen aus dem {@link ItemTextCache} (kein Meta-Clone, kein erneutes Rendering). */
+    record NameMatcher(String expected) implements MetaMatcher {
+        @Override
+        public boolean test(ItemStack stack) {
+            return expected.equals(ItemTextCache.get(stack).plainName());
+        }
+    }
+
+    record LoreMatcher(String[] needles) implements MetaMatcher {
+        @Override
+        public boolean test(ItemStack stack) {
+            List<String> lore = ItemTextCache.get(stack).lore();
+            if (lore == null) return false;
+            for (String needle : needles) {
+                boolean found = false;
+                for (String line : lore) {
+                    if (line != null && line.contains(needle)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "LoreMatcher" + Arrays.toString(needles);
+        }
+    }
+
+    record CmdMatcher(int customModelData) implements MetaMatcher {
+        @Override
+        public boolean test(ItemStack stack) {
+            ItemMeta meta = stack.getItemMeta();
+            return meta != null && meta.hasCustomModelData() && meta.getCustomModelData() == customModelData;
+        }
+    }
+
+    record NeverMeta() implements MetaMatcher {
+        static final NeverMeta INSTANCE = new NeverMeta();
+
+        @Override
+        public boolean test(ItemStack stack) {
+            return false;
+        }
+    }
+
+    /** Basismatch zuerst, danach alle Meta-Checks. */
+    record Combined(CompiledMatcher base, MetaMatcher[] checks) implements CompiledMatcher {
+        @Override
+        public boolean test(ItemStack stack) {
+            if (!base.test(stack)) return false;
+            for (MetaMatcher check : checks) {
+                if (!check.test(stack)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public Material indexMaterial() {
+            return base.indexMaterial();
+        }
+
+        @Override
+        public String toString() {
+            return "Combined[" + base + ", " + Arrays.toString(checks) + "]";
+        }
+    }
+}
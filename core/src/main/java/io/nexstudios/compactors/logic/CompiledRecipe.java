@@ -0,0 +1,122 @@
+package io.nexstudios.compactors.logic;
+
+import io.nexstudios.compactors.config.RecipeConfig;
+import io.nexstudios.compactors.config.RequiredConfig;
+import lombok.Getter;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Unveränderliche, vorkompilierte Form eines {@link RecipeConfig}.
+ * Item-Keys werden einmalig beim Laden aufgelöst, damit der Hot-Path
+ * weder Strings parsen noch parseItem(...) aufrufen muss.
+ */
+@Getter
+public final class CompiledRecipe {
+
+    private final int index;              // Position im Plan des Compactors
+    private final RecipeConfig config;
+    private final String id;
+    private final int priority;
+    private final String[] permissions;   // ohne null/blank Einträge
+    private final RequiredConfig required;
+    private final CompiledMatcher matcher;
+    private final int requiredAmount;
+    private final boolean vanillaKey;        // minecraft:* oder plain Material
+    private final Material indexMaterial;    // Material, das ein passender Stack haben muss; null => nie
+    private final ItemStack resultProto;     // Amount = result.amount, AIR falls nicht auflösbar; nie verändern
+    private final int resultAmount;
+    private final boolean resultValid;       // false => Ergebnis beim Laden nicht auflösbar, Rezept wird übersprungen
+
+    CompiledRecipe(int index, RecipeConfig config) {
+        this.index = index;
+        this.config = config;
+        this.id = config.getId();
+        this.priority = config.getPriority();
+        this.permissions = config.getPermissions() == null
+                ? new String[0]
+                : config.getPermissions().stream().filter(p -> p != null && !p.isBlank()).toArray(String[]::new);
+        this.required = config.getRequired();
+        this.matcher = required.getCompiled() != null
+                ? required.getCompiled()
+                : CompiledMatcher.compile(required.getItem(), required.getMatcher());
+        this.requiredAmount = required.getAmount();
+        this.vanillaKey = isVanillaKey(required.getItem());
+        // löst den Prototyp beim Laden auf (Main-Thread), damit der Hot-Path ihn bereits kennt
+        this.indexMaterial = matcher.indexMaterial();
+        this.resultAmount = Math.max(1, config.getResult().getAmount());
+        this.resultProto = resolveResult(config.getResult().getItem(), resultAmount);
+        this.resultValid = !resultProto.getType().isAir();
+    }
+
+    // Gleiches Rezept an anderer Plan-Position (Umsortieren nach dem Abhängigkeitsgraphen)
+    private CompiledRecipe(int index, CompiledRecipe src) {
+        this.index = index;
+        this.config = src.config;
+        this.id = src.id;
+        this.priority = src.priority;
+        this.permissions = src.permissions;
+        this.required = src.required;
+        this.matcher = src.matcher;
+        this.requiredAmount = src.requiredAmount;
+        this.vanillaKey = src.vanillaKey;
+        this.indexMaterial = src.indexMaterial;
+        this.resultProto = src.resultProto;
+        this.resultAmount = src.resultAmount;
+        this.resultValid = src.resultValid;
+    }
+
+    CompiledRecipe withIndex(int index) {
+        return index == this.index ? this : new CompiledRecipe(index, this);
+    }
+
+    // Über den PrototypeStore, damit gleiche Ergebnis-Keys nur einmal durch den Nexus-Parser laufen
+    private static ItemStack resolveResult(String key, int amount) {
+        ItemStack proto = PrototypeStore.get(key);
+        if (proto.getType().isAir()) return proto;
+        ItemStack copy = proto.clone();
+        copy.setAmount(amount);
+        return copy;
+    }
+
+    /** Frischer Ergebnis-Stack zum Platzieren (Klon des Prototyps). */
+    public ItemStack newResultStack(int amount) {
+        ItemStack stack = resultProto.clone();
+        stack.setAmount(amount);
+        return stack;
+    }
+
+    public boolean hasPermissions() {
+        return permissions.length > 0;
+    }
+
+    static boolean isVanillaKey(String key) {
+        if (key == null) return false;
+        try {
+            NamespacedKey nk = NamespacedKey.fromString(key);
+            if (nk != null && "minecraft".equals(nk.getNamespace())) return true;
+        } catch (Exception ignored) { }
+        try {
+            return Material.matchMaterial(key.toUpperCase()) != null;
+        } catch (Exception ignored) {
+            return false;
+        }
+    }
+
+    // minecraft:* oder plain Material => Material, sonst null (Custom-Item)
+    static Material resolveMaterial(String key) {
+        if (key == null) return null;
+        try {
+            NamespacedKey nk = NamespacedKey.fromString(key);
+            if (nk != null && "minecraft".equals(nk.getNamespace())) {
+                return Material.matchMaterial(nk.getKey().toUpperCase());
+            }
+        } catch (Exception ignored) { }
+        try {
+            return Material.matchMaterial(key.toUpperCase());
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+}
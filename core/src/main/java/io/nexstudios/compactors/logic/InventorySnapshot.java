@@ -0,0 +1,316 @@
+package io.nexstudios.compactors.logic;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+
+import java.util.Arrays;
+
+/**
+ * Einmaliger Snapshot der Storage-Slots für einen Compactor-Pass.
+ * <p>
+ * Pro Rezept wird als Bitmaske gehalten, welche Slots den Required-Matcher erfüllen
+ * ({@code matchMask}) und welche Slots mit dem Ergebnis stapelbar sind ({@code resultMask}).
+ * Crafts werden nur auf dem Snapshot angewendet und die Masken dabei in-place nachgeführt;
+ * erst {@link #flush()} schreibt die geänderten Slots zurück ins Inventar.
+ * <p>
+ * Storage-Inventare haben höchstens 64 Slots (Spieler: 36), daher reicht ein {@code long} je Maske.
+ */
+final class InventorySnapshot {
+
+    enum CraftResult { CRAFTED, MISSING_INPUT, NO_SPACE }
+
+    record BulkResult(int crafted, boolean noSpace) {}
+
+    private final Inventory inv;
+    private final RecipeIndex index;
+    private final CompiledRecipe[] recipes;
+    private final int[] position;      // Plan-Index des Rezepts -> Position in 'recipes', -1 = inaktiv
+    private final int size;
+
+    private final ItemStack[] items;   // Referenz-Stack je Slot (nie mutiert), null = leer
+    private final int[] amounts;       // aktuelle Menge je Slot
+    private final int[] maxStack;      // max. Stackgröße je Slot
+
+    private final long[] matchMask;    // je Rezept: Slots, die als Input taugen
+    private final long[] resultMask;   // je Rezept: Slots, die mit dem Ergebnis stapelbar sind
+    private long freeMask;
+    private long dirtyMask;
+
+    // Lazy: passt das Ergebnis von Rezept r als Input/Ergebnis zu Rezept q? (für neu belegte Slots)
+    private final boolean[][] outMatches;
+    private final boolean[][] outSimilar;
+
+    private InventorySnapshot(Inventory inv, RecipeIndex index, CompiledRecipe[] recipes, int size, int planSize) {
+        this.inv = inv;
+        this.index = index;
+        this.recipes = recipes;
+        this.position = new int[planSize];
+        Arrays.fill(position, -1);
+        for (int p = 0; p < recipes.length; p++) {
+            position[recipes[p].getIndex()] = p;
+        }
+        this.size = size;
+        this.items = new ItemStack[size];
+        this.amounts = new int[size];
+        this.maxStack = new int[size];
+        this.matchMask = new long[recipes.length];
+        this.resultMask = new long[recipes.length];
+        this.outMatches = new boolean[recipes.length][];
+        this.outSimilar = new boolean[recipes.length][];
+    }
+
+    static InventorySnapshot take(Inventory inv, CompiledCompactor cc, CompiledRecipe[] recipes) {
+        int size = inv instanceof PlayerInventory ? 36 : Math.min(64, inv.getSize());
+        InventorySnapshot snap = new InventorySnapshot(inv, cc.getIndex(), recipes, size, cc.size());
+        for (int i = 0; i < size; i++) {
+            ItemStack stack = inv.getItem(i);
+            if (stack == null || stack.getType().isAir()) {
+                snap.freeMask |= 1L << i;
+                continue;
+            }
+            snap.items[i] = stack;
+            snap.amounts[i] = stack.getAmount();
+            snap.maxStack[i] = Math.max(1, stack.getMaxStackSize());
+            snap.indexSlot(i, stack);
+        }
+        return snap;
+    }
+
+    // Slot nur gegen die Kandidaten seines Materials prüfen
+    private void indexSlot(int slot, ItemStack stack) {
+        long bit = 1L << slot;
+        Material type = stack.getType();
+        for (RecipeIndex.RecipeRef ref : index.vanillaInputs(type)) {
+            int p = position[ref.recipe().getIndex()];
+            if (p >= 0 && ItemMatcher.matches(stack, ref.recipe())) matchMask[p] |= bit;
+        }
+        for (RecipeIndex.RecipeRef ref : index.customInputs(type)) {
+            int p = position[ref.recipe().getIndex()];
+            if (p >= 0 && ItemMatcher.matches(stack, ref.recipe())) matchMask[p] |= bit;
+        }
+        for (RecipeIndex.RecipeRef ref : index.outputs(type)) {
+            int p = position[ref.recipe().getIndex()];
+            if (p >= 0 && stack.isSimilar(ref.recipe().getResultProto())) resultMask[p] |= bit;
+        }
+    }
+
+    /** true, wenn mindestens zwei Rezepte dieselben Input-Slots verbrauchen können. */
+    boolean sharesInputs() {
+        long seen = 0;
+        for (long m : matchMask) {
+            if ((seen & m) != 0) return true;
+            seen |= m;
+        }
+        return false;
+    }
+
+    int count(int r) {
+        int total = 0;
+        long m = matchMask[r];
+        while (m != 0) {
+            int i = Long.numberOfTrailingZeros(m);
+            m &= m - 1;
+            total += amounts[i];
+        }
+        return total;
+    }
+
+    /**
+     * Ein Craft von Rezept r, transaktional: Platz für das Ergebnis wird vor dem
+     * Entfernen der Inputs geprüft (gleiches Verhalten wie die bisherigen SlotDeltas).
+     */
+    CraftResult craftOnce(int r) {
+        CompiledRecipe recipe = recipes[r];
+        int need = recipe.getRequiredAmount();
+        if (count(r) < need) return CraftResult.MISSING_INPUT;
+
+        ItemStack out = recipe.getResultProto();
+        int outMax = Math.max(1, out.getMaxStackSize());
+        int remaining = recipe.getResultAmount();
+
+        // 1) Platz simulieren: Teilstapel, dann freie Slots (jeweils in Slot-Reihenfolge)
+        long partial = resultMask[r];
+        long room = 0;
+        for (long m = partial; m != 0 && room < remaining; m &= m - 1) {
+            int i = Long.numberOfTrailingZeros(m);
+            room += Math.max(0, maxStack[i] - amounts[i]);
+        }
+        room += (long) Long.bitCount(freeMask) * outMax;
+        if (room < remaining) return CraftResult.NO_SPACE;
+
+        // 2) Inputs entfernen
+        int toRemove = need;
+        for (long m = matchMask[r]; m != 0 && toRemove > 0; m &= m - 1) {
+            int i = Long.numberOfTrailingZeros(m);
+            int take = Math.min(amounts[i], toRemove);
+            setAmount(i, amounts[i] - take);
+            toRemove -= take;
+        }
+
+        // 3) Ergebnis platzieren
+        for (long m = partial; m != 0 && remaining > 0; m &= m - 1) {
+            int i = Long.numberOfTrailingZeros(m);
+            if (amounts[i] <= 0) continue;
+            int add = Math.min(maxStack[i] - amounts[i], remaining);
+            if (add <= 0) continue;
+            setAmount(i, amounts[i] + add);
+            remaining -= add;
+        }
+        while (remaining > 0 && freeMask != 0) {
+            int i = Long.numberOfTrailingZeros(freeMask);
+            int place = Math.min(outMax, remaining);
+            placeInFreeSlot(i, r, place);
+            remaining -= place;
+        }
+        return CraftResult.CRAFTED;
+    }
+
+    /**
+     * Bulk-Variante: berechnet arithmetisch, wie viele Crafts nacheinander per {@link #craftOnce(int)}
+     * gelingen würden (max. {@code maxCrafts}), und wendet sie als ein Delta an.
+     * Wie im Einzelschritt wird Craft k gegen den Platz nach den Inputs der ersten k-1 Crafts geprüft;
+     * Slots, die dabei komplett geleert werden, zählen ab dann als frei.
+     */
+    BulkResult craftBulk(int r, int maxCrafts) {
+        CompiledRecipe recipe = recipes[r];
+        int need = recipe.getRequiredAmount();
+        int res = recipe.getResultAmount();
+        if (need <= 0 || maxCrafts <= 0) return new BulkResult(0, false);
+
+        int n = Math.min(count(r) / need, maxCrafts);
+        if (n <= 0) return new BulkResult(0, false);
+
+        ItemStack out = recipe.getResultProto();
+        int outMax = Math.max(1, out.getMaxStackSize());
+
+        long room = (long) Long.bitCount(freeMask) * outMax;
+        for (long m = resultMask[r]; m != 0; m &= m - 1) {
+            int i = Long.numberOfTrailingZeros(m);
+            room += Math.max(0, maxStack[i] - amounts[i]);
+        }
+
+        // Kumulierte Input-Mengen in Slot-Reihenfolge: ab hier ist der jeweilige Slot leer
+        long inputs = matchMask[r];
+        long[] drainedAt = new long[Long.bitCount(inputs)];
+        long cum = 0;
+        int k = 0;
+        for (long m = inputs; m != 0; m &= m - 1) {
+            int i = Long.numberOfTrailingZeros(m);
+            cum += amounts[i];
+            drainedAt[k++] = cum;
+        }
+
+        int crafts = 0;
+        int ptr = 0;
+        boolean noSpace = false;
+        for (int j = 1; j <= n; j++) {
+            long removedBefore = (long) (j - 1) * need;
+            while (ptr < k && drainedAt[ptr] <= removedBefore) {
+                room += outMax;
+                ptr++;
+            }
+            if ((long) j * res > room) {
+                noSpace = true;
+                break;
+            }
+            crafts = j;
+        }
+        if (crafts == 0) return new BulkResult(0, noSpace);
+
+        // Inputs entfernen
+        long toRemove = (long) crafts * need;
+        for (long m = inputs; m != 0 && toRemove > 0; m &= m - 1) {
+            int i = Long.numberOfTrailingZeros(m);
+            int take = (int) Math.min(amounts[i], toRemove);
+            setAmount(i, amounts[i] - take);
+            toRemove -= take;
+        }
+
+        // Ergebnis platzieren: Teilstapel, dann freie Slots
+        long remaining = (long) crafts * res;
+        for (long m = resultMask[r]; m != 0 && remaining > 0; m &= m - 1) {
+            int i = Long.numberOfTrailingZeros(m);
+            int add = (int) Math.min(maxStack[i] - amounts[i], remaining);
+            if (add <= 0) continue;
+            setAmount(i, amounts[i] + add);
+            remaining -= add;
+        }
+        while (remaining > 0 && freeMask != 0) {
+            int i = Long.numberOfTrailingZeros(freeMask);
+            int place = (int) Math.min(outMax, remaining);
+            placeInFreeSlot(i, r, place);
+            remaining -= place;
+        }
+        return new BulkResult(crafts, noSpace);
+    }
+
+    private void setAmount(int slot, int amount) {
+        long bit = 1L << slot;
+        dirtyMask |= bit;
+        if (amount > 0) {
+            amounts[slot] = amount;
+            return;
+        }
+        // Slot geleert -> aus allen Masken austragen
+        items[slot] = null;
+        amounts[slot] = 0;
+        freeMask |= bit;
+        for (int q = 0; q < recipes.length; q++) {
+            matchMask[q] &= ~bit;
+            resultMask[q] &= ~bit;
+        }
+    }
+
+    private void placeInFreeSlot(int slot, int producer, int amount) {
+        long bit = 1L << slot;
+        ItemStack out = recipes[producer].getResultProto();
+        items[slot] = out;
+        amounts[slot] = amount;
+        maxStack[slot] = Math.max(1, out.getMaxStackSize());
+        freeMask &= ~bit;
+        dirtyMask |= bit;
+
+        boolean[] matches = outMatches[producer];
+        boolean[] similar = outSimilar[producer];
+        if (matches == null) {
+            matches = new boolean[recipes.length];
+            similar = new boolean[recipes.length];
+            Material type = out.getType();
+            for (RecipeIndex.RecipeRef ref : index.vanillaInputs(type)) {
+                int q = position[ref.recipe().getIndex()];
+                if (q >= 0) matches[q] = ItemMatcher.matches(out, ref.recipe());
+            }
+            for (RecipeIndex.RecipeRef ref : index.customInputs(type)) {
+                int q = position[ref.recipe().getIndex()];
+                if (q >= 0) matches[q] = ItemMatcher.matches(out, ref.recipe());
+            }
+            for (RecipeIndex.RecipeRef ref : index.outputs(type)) {
+                int q = position[ref.recipe().getIndex()];
+                if (q >= 0) similar[q] = out.isSimilar(ref.recipe().getResultProto());
+            }
+            outMatches[producer] = matches;
+            outSimilar[producer] = similar;
+        }
+        for (int q = 0; q < recipes.length; q++) {
+            if (matches[q]) matchMask[q] |= bit;
+            if (similar[q]) resultMask[q] |= bit;
+        }
+    }
+
+    /** Schreibt alle geänderten Slots ins Inventar zurück. */
+    void flush() {
+        for (long m = dirtyMask; m != 0; m &= m - 1) {
+            int i = Long.numberOfTrailingZeros(m);
+            if (amounts[i] <= 0 || items[i] == null) {
+                inv.setItem(i, null);
+            } else {
+                ItemStack after = items[i].clone();
+                after.setAmount(amounts[i]);
+                inv.setItem(i, after);
+            }
+        }
+        dirtyMask = 0;
+    }
+}
@@ -0,0 +1,108 @@
+package io.nexstudios.compactors.logic;
+
+import io.papermc.paper.datacomponent.DataComponentTypes;
+import io.papermc.paper.datacomponent.item.ItemLore;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import net.kyori.adventure.translation.GlobalTranslator;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache für gerenderte Item-Texte (Plain-Displayname + Lore-Zeilen), wie sie die
+ * NAME/LORE/COMBINED-Matcher brauchen.
+ * <p>
+ * Schlüssel ist ein günstiger Fingerprint aus Material und den Data-Components
+ * {@code custom_name}/{@code lore}, die direkt vom Stack gelesen werden (kein ItemMeta-Clone).
+ * Bei Treffern entfallen GlobalTranslator-Rendering und Legacy-Konvertierung.
+ * Begrenzt auf {@link #MAX_ENTRIES}; beim Überlauf wird der Cache komplett geleert.
+ */
+public final class ItemTextCache {
+    private ItemTextCache() {}
+
+    private static final int MAX_ENTRIES = 4096;
+
+    /** Plain-Name (null = kein Custom-Name) und Lore im Legacy-Format wie {@link ItemMeta#getLore()} (null = keine Lore). */
+    public record Text(String plainName, List<String> lore) {
+        static final Text EMPTY = new Text(null, null);
+    }
+
+    private record Fingerprint(Material type, Component name, List<Component> lore, int hash) {
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Fingerprint f && f.hash == hash && f.type == type
+                    && Objects.equals(f.name, name) && Objects.equals(f.lore, lore);
+        }
+    }
+
+    private static final ConcurrentHashMap<Fingerprint, Text> CACHE = new ConcurrentHashMap<>();
+
+    public static Text get(ItemStack stack) {
+        Component name;
+        List<Component> lore;
+        try {
+            name = stack.getData(DataComponentTypes.CUSTOM_NAME);
+            ItemLore itemLore = stack.getData(DataComponentTypes.LORE);
+            lore = itemLore == null || itemLore.lines().isEmpty() ? null : itemLore.lines();
+        } catch (Throwable ignored) {
+            return fromMeta(stack.getItemMeta());
+        }
+        if (name == null && lore == null) return Text.EMPTY;
+
+        Fingerprint fp = new Fingerprint(stack.getType(), name, lore, Objects.hash(stack.getType(), name, lore));
+        Text cached = CACHE.get(fp);
+        if (cached != null) return cached;
+
+        Text text;
+        try {
+            text = new Text(name == null ? null : renderPlain(name), lore == null ? null : toLegacy(lore));
+        } catch (Throwable ignored) {
+            return fromMeta(stack.getItemMeta());
+        }
+        if (CACHE.size() >= MAX_ENTRIES) {
+            CACHE.clear();
+        }
+        CACHE.put(fp, text);
+        return text;
+    }
+
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    public static int size() {
+        return CACHE.size();
+    }
+
+    // Robust gegen Adventure-Components und Lokalisierungen (serverseitig EN als Fallback)
+    private static String renderPlain(Component c) {
+        return PlainTextComponentSerializer.plainText().serialize(GlobalTranslator.render(c, Locale.ENGLISH));
+    }
+
+    private static List<String> toLegacy(List<Component> lines) {
+        List<String> out = new ArrayList<>(lines.size());
+        for (Component line : lines) {
+            out.add(LegacyComponentSerializer.legacySection().serialize(line));
+        }
+        return List.copyOf(out);
+    }
+
+    // Fallback ohne Data-Component-API: bisheriger Weg über die ItemMeta
+    private static Text fromMeta(ItemMeta meta) {
+        if (meta == null) return Text.EMPTY;
+        return new Text(ItemMatcher.getPlainDisplayName(meta), meta.hasLore() ? meta.getLore() : null);
+    }
+}
@@ -33,10 +33,15 @@ public final class ItemUtil {
 
     public static int countMatching(Inventory inv, RequiredConfig req) {
         if (inv == null || req == null) return 0;
+        return countMatching(inv, req.getCompiled());
+    }
+
+    public static int countMatching(Inventory inv, CompiledMatcher matcher) {
+        if (inv == null || matcher == null) return 0;
         int total = 0;
         for (ItemStack s : inv.getContents()) {
             if (s == null || s.getType() == Material.AIR) continue;
-            if (ItemMatcher.matches(s, req)) {
+            if (matcher.test(s)) {
                 total += s.getAmount(); // wichtig: getAmount()
             }
         }
@@ -44,13 +49,18 @@ public final class ItemUtil {
     }
 
     public static int removeMatching(Inventory inv, RequiredConfig req, int toRemove) {
-        if (inv == null || req == null || toRemove <= 0) return 0;
+        if (inv == null || req == null) return 0;
+        return removeMatching(inv, req.getCompiled(), toRemove);
+    }
+
+    public static int removeMatching(Inventory inv, CompiledMatcher matcher, int toRemove) {
+        if (inv == null || matcher == null || toRemove <= 0) return 0;
         int removed = 0;
 
         for (int slot = 0; slot < inv.getSize() && removed < toRemove; slot++) {
             ItemStack s = inv.getItem(slot);
             if (s == null || s.getType() == Material.AIR) continue;
-            if (!ItemMatcher.matches(s, req)) continue;
+            if (!matcher.test(s)) continue;
 
             int canTake = Math.min(toRemove - removed, s.getAmount());
             int remain = s.getAmount() - canTake;
@@ -0,0 +1,98 @@
+package io.nexstudios.compactors.logic;
+
+import io.nexstudios.compactors.config.CompactorConfig;
+import io.nexstudios.compactors.config.RecipeConfig;
+import org.bukkit.entity.Player;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Permission-Snapshots pro Spieler für das Rezept-Gating.
+ * <p>
+ * Alle Permission-Nodes aus den Rezepten werden beim Laden interniert; jedes Rezept bekommt ein
+ * Bitset seiner benötigten Nodes. Pro Spieler wird jeder Node höchstens einmal per
+ * {@link Player#hasPermission(String)} geprüft und das Ergebnis in einem Bitset gemerkt, bis der
+ * Snapshot verworfen wird (Join, Weltwechsel, Permission-Neuberechnung, Reload).
+ */
+public final class PermissionSnapshots {
+
+    private static final BitSet NONE = new BitSet(0);
+
+    private final String[] nodes;
+    // Identität: dieselben RecipeConfig-Instanzen wie in der Registry
+    private final Map<RecipeConfig, BitSet> required;
+    private final Map<UUID, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    private PermissionSnapshots(String[] nodes, Map<RecipeConfig, BitSet> required) {
+        this.nodes = nodes;
+        this.required = required;
+    }
+
+    public static PermissionSnapshots of(Collection<CompactorConfig> compactors) {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        Map<RecipeConfig, BitSet> required = new IdentityHashMap<>();
+        for (CompactorConfig cfg : compactors) {
+            for (RecipeConfig r : cfg.getRecipes()) {
+                List<String> perms = r.getPermissions();
+                if (perms == null || perms.isEmpty()) {
+                    required.put(r, NONE);
+                    continue;
+                }
+                BitSet bits = new BitSet();
+                for (String node : perms) {
+                    if (node == null || node.isBlank()) continue;
+                    bits.set(ids.computeIfAbsent(node, k -> ids.size()));
+                }
+                required.put(r, bits.isEmpty() ? NONE : bits);
+            }
+        }
+        return new PermissionSnapshots(ids.keySet().toArray(String[]::new), required);
+    }
+
+    /** Hat der Spieler alle Permissions des Rezepts? */
+    public boolean hasAll(Player player, RecipeConfig recipe) {
+        BitSet req = required.get(recipe);
+        if (req == null) return hasAllDirect(player, recipe.getPermissions()); // nicht interniert
+        if (req.isEmpty()) return true;
+        return snapshots.computeIfAbsent(player.getUniqueId(), k -> new Snapshot()).hasAll(player, req);
+    }
+
+    public void invalidate(UUID player) {
+        snapshots.remove(player);
+    }
+
+    public void clear() {
+        snapshots.clear();
+    }
+
+    public int nodeCount() {
+        return nodes.length;
+    }
+
+    private static boolean hasAllDirect(Player player, List<String> perms) {
+        if (perms == null || perms.isEmpty()) return true;
+        for (String node : perms) {
+            if (node == null || node.isBlank()) continue;
+            if (!player.hasPermission(node)) return false;
+        }
+        return true;
+    }
+
+    // Lazy: nur tatsächlich abgefragte Nodes werden geprüft
+    private final class Snapshot {
+        private final BitSet checked = new BitSet(nodes.length);
+        private final BitSet granted = new BitSet(nodes.length);
+
+        synchronized boolean hasAll(Player player, BitSet req) {
+            for (int i = req.nextSetBit(0); i >= 0; i = req.nextSetBit(i + 1)) {
+                if (!checked.get(i)) {
+                    checked.set(i);
+                    if (player.hasPermission(nodes[i])) granted.set(i);
+                }
+                if (!granted.get(i)) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package io.nexstudios.compactors.logic;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prototypen für Rezept-Item-Keys (z. B. "minecraft:stone" oder "mmoitems:..."), damit
+ * parseItem(...) nicht bei jedem Slot-Check läuft.
+ * <p>
+ * Lesen ist ein lock-freier {@link ConcurrentHashMap#get}. Keys, die zu AIR auflösen (unbekannt oder
+ * Custom-Item noch nicht geladen), werden negativ gecacht und erst nach {@code retryNanos} erneut versucht.
+ * Jeder Reload startet per {@link #reset} eine neue Generation; Matcher mit eigenem Prototyp
+ * vergleichen ihre Generation und lösen nach einem Reload neu auf. Keys kommen nur aus den Configs,
+ * eine Verdrängung ist daher nicht nötig.
+ */
+public final class PrototypeStore {
+    private PrototypeStore() {}
+
+    private static final ItemStack AIR = ItemStack.of(Material.AIR);
+
+    // retryAt == 0 => aufgelöst; sonst nanoTime, ab dem ein AIR-Eintrag neu versucht wird
+    private record Slot(ItemStack proto, long retryAt) {}
+
+    private record Generation(int id, ConcurrentHashMap<String, Slot> slots, long retryNanos) {}
+
+    private static volatile Generation current = new Generation(0, new ConcurrentHashMap<>(), 30_000_000_000L);
+
+    /** Neue, leere Generation, dimensioniert für die erwartete Anzahl Keys (z. B. Rezeptanzahl). */
+    public static void reset(int expectedKeys, long retryMillis) {
+        Generation old = current;
+        int capacity = Math.max(16, (int) (expectedKeys / 0.75f) + 1);
+        current = new Generation(old.id() + 1, new ConcurrentHashMap<>(capacity), Math.max(0, retryMillis) * 1_000_000L);
+    }
+
+    public static int generation() {
+        return current.id();
+    }
+
+    /** Prototyp zum Key (Amount 1); AIR, wenn (noch) nicht auflösbar. Nicht verändern, nur klonen. */
+    public static ItemStack get(String key) {
+        Generation g = current;
+        Slot slot = g.slots().get(key);
+        long now = System.nanoTime();
+        if (slot != null && (slot.retryAt() == 0 || now - slot.retryAt() < 0)) return slot.proto();
+
+        ItemStack built = build(key);
+        g.slots().put(key, built.getType().isAir() ? new Slot(AIR, now + g.retryNanos()) : new Slot(built, 0));
+        return built.getType().isAir() ? AIR : built;
+    }
+
+    /**
+     * Nur lesen: Prototyp aus der aktuellen Generation oder AIR, ohne Parsen/Retry.
+     * Für Aufrufer abseits des Main-Threads; aufgelöst wird vorher per {@link #get} auf dem Main-Thread.
+     */
+    public static ItemStack peek(String key) {
+        Slot slot = current.slots().get(key);
+        return slot == null ? AIR : slot.proto();
+    }
+
+    public static int size() {
+        return current.slots().size();
+    }
+
+    /** Anzahl der Keys, die aktuell als nicht auflösbar gecacht sind. */
+    public static int unresolved() {
+        int n = 0;
+        for (Slot slot : current.slots().values()) {
+            if (slot.retryAt() != 0) n++;
+        }
+        return n;
+    }
+
+    private static ItemStack build(String key) {
+        if (key == null) return AIR;
+        try {
+            ItemStack built = ItemUtil.parseItem(key, 1); // Amount 1 reicht; isSimilar ignoriert ohnehin die Amount
+            return built == null ? AIR : built;
+        } catch (RuntimeException ex) {
+            return AIR;
+        }
+    }
+}
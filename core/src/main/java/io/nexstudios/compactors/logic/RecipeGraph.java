@@ -0,0 +1,167 @@
+package io.nexstudios.compactors.logic;
+
+import lombok.Getter;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.*;
+
+/**
+ * Abhängigkeitsgraph zwischen Rezepten: Kante p -> c, wenn der Required-Matcher von c das
+ * Ergebnis von p akzeptiert (dieselben Regeln wie beim Crafting: MATERIAL, Basis-Material von
+ * Custom-Items, NAME/LORE-Meta).
+ * <p>
+ * Wird beim Laden gebaut: Zyklen (starke Zusammenhangskomponenten mit mehr als einem Rezept
+ * oder Selbstkante) werden per Tarjan erkannt. {@link #order()} liefert eine topologische
+ * Reihenfolge, die nur abhängige Rezepte umsortiert: ansonsten gilt die Priorität.
+ */
+public final class RecipeGraph {
+
+    private final List<CompiledRecipe> recipes;
+    private final BitSet[] next;          // Knoten = Position in 'recipes'
+    private final int[] component;        // Knoten -> SCC
+    @Getter
+    private final List<List<CompiledRecipe>> cycles;
+
+    private RecipeGraph(List<CompiledRecipe> recipes, BitSet[] next, int[] component, List<List<CompiledRecipe>> cycles) {
+        this.recipes = recipes;
+        this.next = next;
+        this.component = component;
+        this.cycles = cycles;
+    }
+
+    public static RecipeGraph build(List<CompiledRecipe> recipes) {
+        List<CompiledRecipe> nodes = List.copyOf(recipes);
+        int n = nodes.size();
+        BitSet[] next = new BitSet[n];
+        for (int p = 0; p < n; p++) {
+            BitSet b = new BitSet(n);
+            ItemStack out = nodes.get(p).getResultProto();
+            if (!out.getType().isAir()) {
+                for (int c = 0; c < n; c++) {
+                    CompiledRecipe consumer = nodes.get(c);
+                    // Index-Material als Vorfilter (ein passender Stack muss es haben), dann der echte Matcher
+                    if (consumer.getIndexMaterial() == out.getType() && consumer.getMatcher().test(out)) b.set(c);
+                }
+            }
+            next[p] = b;
+        }
+        return new Tarjan(nodes, next).run();
+    }
+
+    public boolean hasCycles() {
+        return !cycles.isEmpty();
+    }
+
+    /** Direkte Abhängigkeit: das Ergebnis von {@code producer} taugt als Input für {@code consumer}. */
+    public boolean dependsOn(int consumer, int producer) {
+        return next[producer].get(consumer);
+    }
+
+    /**
+     * Positionen in Auswertungsreihenfolge: Erzeuger vor Verbrauchern, sonst nach Priorität
+     * (bei Gleichstand nach Position). Rezepte eines Zyklus stehen zusammen, untereinander nach Priorität.
+     */
+    public int[] order() {
+        int n = recipes.size();
+        int comps = 0;
+        for (int c : component) comps = Math.max(comps, c + 1);
+
+        // Kondensierter DAG über die Komponenten
+        List<List<Integer>> members = new ArrayList<>();
+        for (int c = 0; c < comps; c++) members.add(new ArrayList<>());
+        for (int v = 0; v < n; v++) members.get(component[v]).add(v);
+        Comparator<Integer> byPriority = Comparator.<Integer>comparingInt(v -> recipes.get(v).getPriority())
+                .thenComparingInt(v -> v);
+        members.forEach(m -> m.sort(byPriority));
+
+        int[] indegree = new int[comps];
+        List<Set<Integer>> succ = new ArrayList<>();
+        for (int c = 0; c < comps; c++) succ.add(new HashSet<>());
+        for (int v = 0; v < n; v++) {
+            for (int w = next[v].nextSetBit(0); w >= 0; w = next[v].nextSetBit(w + 1)) {
+                int a = component[v], b = component[w];
+                if (a != b && succ.get(a).add(b)) indegree[b]++;
+            }
+        }
+
+        // Kahn mit Priority-Queue: unabhängige Rezepte behalten ihre Prioritäts-Reihenfolge
+        PriorityQueue<Integer> ready = new PriorityQueue<>(
+                Comparator.comparing((Integer c) -> members.get(c).get(0), byPriority));
+        for (int c = 0; c < comps; c++) {
+            if (indegree[c] == 0) ready.add(c);
+        }
+        int[] order = new int[n];
+        int k = 0;
+        while (!ready.isEmpty()) {
+            int c = ready.poll();
+            for (int v : members.get(c)) order[k++] = v;
+            for (int b : succ.get(c)) {
+                if (--indegree[b] == 0) ready.add(b);
+            }
+        }
+        return order;
+    }
+
+    private static final class Tarjan {
+        private final List<CompiledRecipe> nodes;
+        private final BitSet[] next;
+        private final int[] index;
+        private final int[] low;
+        private final int[] component;
+        private final boolean[] onStack;
+        private final Deque<Integer> stack = new ArrayDeque<>();
+        private final List<List<CompiledRecipe>> cycles = new ArrayList<>();
+        private int counter;
+        private int components;
+
+        Tarjan(List<CompiledRecipe> nodes, BitSet[] next) {
+            this.nodes = nodes;
+            this.next = next;
+            int n = nodes.size();
+            this.index = new int[n];
+            this.low = new int[n];
+            this.component = new int[n];
+            this.onStack = new boolean[n];
+            Arrays.fill(index, -1);
+        }
+
+        RecipeGraph run() {
+            for (int v = 0; v < nodes.size(); v++) {
+                if (index[v] < 0) visit(v);
+            }
+            return new RecipeGraph(nodes, next, component, List.copyOf(cycles));
+        }
+
+        private void visit(int v) {
+            index[v] = counter;
+            low[v] = counter;
+            counter++;
+            stack.push(v);
+            onStack[v] = true;
+
+            for (int w = next[v].nextSetBit(0); w >= 0; w = next[v].nextSetBit(w + 1)) {
+                if (index[w] < 0) {
+                    visit(w);
+                    low[v] = Math.min(low[v], low[w]);
+                } else if (onStack[w]) {
+                    low[v] = Math.min(low[v], index[w]);
+                }
+            }
+
+            if (low[v] == index[v]) {
+                List<CompiledRecipe> comp = new ArrayList<>();
+                int w;
+                do {
+                    w = stack.pop();
+                    onStack[w] = false;
+                    component[w] = components;
+                    comp.add(nodes.get(w));
+                } while (w != v);
+                components++;
+                if (comp.size() > 1 || next[v].get(v)) {
+                    cycles.add(List.copyOf(comp));
+                }
+            }
+        }
+    }
+}
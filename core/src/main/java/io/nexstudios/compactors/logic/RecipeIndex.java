@@ -0,0 +1,82 @@
+package io.nexstudios.compactors.logic;
+
+import org.bukkit.Material;
+
+import java.util.*;
+
+/**
+ * Material-Index über kompilierte Rezepte.
+ * <p>
+ * Ein Slot wird nur gegen Rezepte geprüft, deren Required-Item seinen Material-Typ haben kann.
+ * Vanilla-Keys landen im Bucket ihres Materials, Custom-Items (nicht-{@code minecraft} Namespace)
+ * in einem eigenen Bucket, geschlüsselt nach dem Basis-Material des Prototyps.
+ * Zusätzlich werden die Ergebnis-Items nach Material indiziert (stapelbare Ziel-Slots).
+ */
+public final class RecipeIndex {
+
+    public record RecipeRef(CompiledCompactor compactor, CompiledRecipe recipe) {}
+
+    private static final RecipeRef[] NONE = new RecipeRef[0];
+
+    private final EnumMap<Material, RecipeRef[]> vanillaInputs;
+    private final EnumMap<Material, RecipeRef[]> customInputs;
+    private final EnumMap<Material, RecipeRef[]> outputs;
+
+    private RecipeIndex(EnumMap<Material, RecipeRef[]> vanillaInputs,
+                        EnumMap<Material, RecipeRef[]> customInputs,
+                        EnumMap<Material, RecipeRef[]> outputs) {
+        this.vanillaInputs = vanillaInputs;
+        this.customInputs = customInputs;
+        this.outputs = outputs;
+    }
+
+    public static RecipeIndex of(Collection<CompiledCompactor> compactors) {
+        Map<Material, List<RecipeRef>> vanilla = new EnumMap<>(Material.class);
+        Map<Material, List<RecipeRef>> custom = new EnumMap<>(Material.class);
+        Map<Material, List<RecipeRef>> out = new EnumMap<>(Material.class);
+        for (CompiledCompactor cc : compactors) {
+            for (CompiledRecipe r : cc.getRecipes()) {
+                RecipeRef ref = new RecipeRef(cc, r);
+                Material in = r.getIndexMaterial();
+                if (in != null) {
+                    (r.isVanillaKey() ? vanilla : custom).computeIfAbsent(in, k -> new ArrayList<>()).add(ref);
+                }
+                Material res = r.getResultProto().getType();
+                if (!res.isAir()) {
+                    out.computeIfAbsent(res, k -> new ArrayList<>()).add(ref);
+                }
+            }
+        }
+        return new RecipeIndex(freeze(vanilla), freeze(custom), freeze(out));
+    }
+
+    private static EnumMap<Material, RecipeRef[]> freeze(Map<Material, List<RecipeRef>> src) {
+        EnumMap<Material, RecipeRef[]> map = new EnumMap<>(Material.class);
+        src.forEach((m, list) -> map.put(m, list.toArray(RecipeRef[]::new)));
+        return map;
+    }
+
+    public RecipeRef[] vanillaInputs(Material type) {
+        return vanillaInputs.getOrDefault(type, NONE);
+    }
+
+    public RecipeRef[] customInputs(Material type) {
+        return customInputs.getOrDefault(type, NONE);
+    }
+
+    public RecipeRef[] outputs(Material type) {
+        return outputs.getOrDefault(type, NONE);
+    }
+
+    public Set<Material> inputMaterials() {
+        Set<Material> all = EnumSet.noneOf(Material.class);
+        all.addAll(vanillaInputs.keySet());
+        all.addAll(customInputs.keySet());
+        return all;
+    }
+
+    /** Kann ein Item dieses Typs Input irgendeines indizierten Rezepts sein? */
+    public boolean isInput(Material type) {
+        return vanillaInputs.containsKey(type) || customInputs.containsKey(type);
+    }
+}
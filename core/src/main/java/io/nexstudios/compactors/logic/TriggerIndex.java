@@ -0,0 +1,69 @@
+package io.nexstudios.compactors.logic;
+
+import io.nexstudios.compactors.config.CompactorTriggers;
+
+import java.util.*;
+
+/**
+ * Unveränderlicher Index: welcher Trigger bedient welche Compactors, mit welchem Delay.
+ * Wird beim Laden/Reload einmal aus den kompilierten Compactors gebaut; Event-Handler
+ * und Scheduler lesen nur noch Arrays statt über alle Configs zu streamen.
+ */
+public final class TriggerIndex {
+
+    public enum Type { PICKUP, ADD_ITEM, AUTOPICKUP }
+
+    private static final CompiledCompactor[] NONE = new CompiledCompactor[0];
+
+    private final CompiledCompactor[] all;
+    private final EnumMap<Type, CompiledCompactor[]> byType;
+    private final Map<CompiledCompactor, Integer> delays;
+
+    private TriggerIndex(CompiledCompactor[] all, EnumMap<Type, CompiledCompactor[]> byType,
+                         Map<CompiledCompactor, Integer> delays) {
+        this.all = all;
+        this.byType = byType;
+        this.delays = delays;
+    }
+
+    public static TriggerIndex of(Collection<CompiledCompactor> compactors) {
+        Map<Type, List<CompiledCompactor>> lists = new EnumMap<>(Type.class);
+        Map<CompiledCompactor, Integer> delays = new IdentityHashMap<>();
+        List<CompiledCompactor> all = new ArrayList<>();
+        for (CompiledCompactor cc : compactors) {
+            if (cc.isEmpty()) continue;
+            all.add(cc);
+            CompactorTriggers t = cc.getConfig().getTriggers();
+            delays.put(cc, t == null ? 0 : Math.max(0, t.getDelayTicks()));
+            if (t == null) continue;
+            if (t.isOnPickup()) lists.computeIfAbsent(Type.PICKUP, k -> new ArrayList<>()).add(cc);
+            if (t.isOnAddItem()) lists.computeIfAbsent(Type.ADD_ITEM, k -> new ArrayList<>()).add(cc);
+            if (t.isOnAutoPickup()) lists.computeIfAbsent(Type.AUTOPICKUP, k -> new ArrayList<>()).add(cc);
+        }
+        EnumMap<Type, CompiledCompactor[]> byType = new EnumMap<>(Type.class);
+        lists.forEach((type, list) -> byType.put(type, list.toArray(CompiledCompactor[]::new)));
+        return new TriggerIndex(all.toArray(CompiledCompactor[]::new), byType, Collections.unmodifiableMap(delays));
+    }
+
+    /** Alle Compactors mit mindestens einem Rezept. */
+    public CompiledCompactor[] all() {
+        return all;
+    }
+
+    public CompiledCompactor[] compactors(Type type) {
+        return byType.getOrDefault(type, NONE);
+    }
+
+    public boolean serves(Type type) {
+        return byType.containsKey(type);
+    }
+
+    /** Alle Trigger-Typen, die mindestens ein Compactor nutzt. */
+    public Set<Type> types() {
+        return Collections.unmodifiableSet(byType.keySet());
+    }
+
+    public int delayTicks(CompiledCompactor cc) {
+        return delays.getOrDefault(cc, 0);
+    }
+}
@@ -5,21 +5,36 @@ import io.nexstudios.compactors.command.CompactorCommandRegistrar;
 import io.nexstudios.compactors.config.CompactorConfig;
 import io.nexstudios.compactors.config.CompactorFileReader;
 import io.nexstudios.compactors.database.CompactorPlayerCache;
+import io.nexstudios.compactors.inventory.CompactorInventory;
 import io.nexstudios.compactors.database.CompactorPlayerStateDao;
+import io.nexstudios.compactors.database.CompactorStateMigration;
+import io.nexstudios.compactors.database.CompactorStateWriter;
 import io.nexstudios.compactors.logic.CompactorManager;
 import io.nexstudios.compactors.logic.CompactorPlayerListener;
+import io.nexstudios.compactors.logic.CompactionScheduler;
 import io.nexstudios.compactors.logic.CompactorTriggerListener;
+import io.nexstudios.compactors.logic.CompactorSnapshot;
+import io.nexstudios.compactors.logic.CompiledCompactor;
+import io.nexstudios.compactors.logic.CompiledRecipe;
+import io.nexstudios.compactors.logic.ItemTextCache;
+import io.nexstudios.compactors.logic.PermissionSnapshots;
+import io.nexstudios.compactors.logic.PrototypeStore;
+import io.nexstudios.compactors.logic.RecipeGraph;
+import io.nexstudios.compactors.logic.RecipeIndex;
+import io.nexstudios.compactors.logic.TriggerIndex;
 import io.nexstudios.nexus.bukkit.database.api.DbAsyncHelper;
 import io.nexstudios.nexus.bukkit.database.api.NexusDatabaseService;
 import io.nexstudios.nexus.bukkit.utils.NexusLogger;
 import lombok.Getter;
 import org.bukkit.Bukkit;
-import org.bukkit.entity.Player;
 import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 @Getter
 public class CompactorRegistry {
@@ -27,7 +42,9 @@ public class CompactorRegistry {
     private final NexCompactors plugin;
     private final NexusLogger logger;
 
-    private final Map<String, CompactorConfig> compactors = new ConcurrentHashMap<>(); // key = compactorId (file name)
+    // Configs, Pläne und Indizes als ein unveränderlicher Stand; Reload tauscht nur diese Referenz
+    private final AtomicReference<CompactorSnapshot> snapshot = new AtomicReference<>(CompactorSnapshot.EMPTY);
+    private final AtomicBoolean reloading = new AtomicBoolean(false);
     private CompactorManager compactorManager;
     private CompactorTriggerListener triggerListener;
     private CompactorPlayerListener playerListener;
@@ -36,9 +53,13 @@ public class CompactorRegistry {
     private NexusDatabaseService db;
     private DbAsyncHelper dbHelper;
     private CompactorPlayerStateDao playerStateDao;
+    private CompactorStateWriter stateWriter;
+    private CompactorStateMigration stateMigration;
 
-    // Persistenter Cache über Reloads hinweg
+    // Persistenter Cache über Reloads hinweg (Offline-Spieler werden per TTL/Obergrenze verdrängt)
     private final CompactorPlayerCache playerCache = new CompactorPlayerCache();
+    private BukkitTask cacheEvictionTask;
+    private BukkitTask prototypeRetryTask;
 
     public CompactorRegistry(NexCompactors plugin) {
         this.plugin = plugin;
@@ -54,24 +75,132 @@ public class CompactorRegistry {
         initServicesAndEvents();
         registerCommands();
         warmupOnlinePlayers();
-        logger.info("Compactors initialized: " + compactors.keySet());
+        // Offline-Einträge jede Minute prüfen
+        cacheEvictionTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, playerCache::evictExpired, 1200L, 1200L);
+        // Nicht auflösbare Prototypen im Retry-Intervall nachziehen (Main-Thread: Custom-Item-Plugins)
+        long retryTicks = Math.max(1, prototypeRetrySeconds()) * 20L;
+        prototypeRetryTask = Bukkit.getScheduler().runTaskTimer(plugin, this::refreshResolvedPrototypes, retryTicks, retryTicks);
+        logger.info("Compactors initialized: " + getCompactors().keySet());
     }
 
+    /** key = compactorId (file name) */
+    public Map<String, CompactorConfig> getCompactors() {
+        return snapshot.get().compactors();
+    }
+
+    /** nur aktivierte Compactors */
+    public Map<String, CompiledCompactor> getCompiledCompactors() {
+        return snapshot.get().compiled();
+    }
+
+    public RecipeIndex getRecipeIndex() {
+        return snapshot.get().recipeIndex();
+    }
+
+    public TriggerIndex getTriggerIndex() {
+        return snapshot.get().triggerIndex();
+    }
+
+    public PermissionSnapshots getPermissionSnapshots() {
+        return snapshot.get().permissions();
+    }
+
+    /**
+     * Inkrementeller Reload: Dateien werden asynchron gehasht und nur geänderte neu geparst.
+     * Kompiliert und veröffentlicht wird auf dem Main-Thread (Item-Prototypen), per einem Referenz-Tausch.
+     * Alle Pläne werden neu kompiliert (neue Prototyp-Generation); Listener, Commands und Spieler-Caches
+     * unveränderter Compactors bleiben bestehen.
+     */
     public void reload() {
-        if (db == null) return; // not initialized yet
-        unloadCommandsAndEvents();
-        compactors.clear();
-        loadFiles();
-        initServicesAndEvents();
-        registerCommands();
-        warmupOnlinePlayers();
-        logger.info("Compactors reloaded: " + compactors.keySet());
+        if (db == null || compactorManager == null) return; // not initialized yet
+        if (!reloading.compareAndSet(false, true)) {
+            logger.warning("Compactor reload already in progress, ignoring.");
+            return;
+        }
+        CompactorSnapshot previous = snapshot.get();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<CompactorFileReader.Source> sources;
+            try {
+                sources = new CompactorFileReader(plugin, logger).read(previous.fileHashes());
+            } catch (Exception ex) {
+                logger.error("Compactor reload failed: " + ex.getMessage());
+                reloading.set(false);
+                return;
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                try {
+                    publish(previous, sources);
+                } catch (Exception ex) {
+                    logger.error("Compactor reload failed: " + ex.getMessage());
+                } finally {
+                    reloading.set(false);
+                }
+            });
+        });
+    }
+
+    private void publish(CompactorSnapshot previous, List<CompactorFileReader.Source> sources) {
+        resetPrototypes(previous, sources);
+        CompactorSnapshot next = buildSnapshot(previous, sources);
+        prewarmPrototypes(next);
+        CompactorInventory.invalidateCache(); // vorgerenderte GUI-Items nutzen die alten Prototypen
+        Set<String> changed = new HashSet<>();
+        Set<String> ids = new HashSet<>(previous.compactors().keySet());
+        ids.addAll(next.compactors().keySet());
+        for (String id : ids) {
+            if (previous.compactors().get(id) != next.compactors().get(id)) changed.add(id);
+        }
+
+        // Settings können sich geändert haben (Tick-Budget, Cache-Grenzen)
+        compactorManager.getScheduler().configure(CompactionScheduler.TickBudget.from(plugin.getSettingsFile()));
+
+        // Auch ohne geänderte Dateien veröffentlichen: alle Pläne tragen Prototypen der neuen Generation
+        if (!snapshot.compareAndSet(previous, next)) {
+            logger.warning("Compactor snapshot changed during reload, discarding this reload.");
+            return;
+        }
+        configurePlayerCache(next);
+        // Aktiv-Sets hängen an der Plan-Reihenfolge, die sich mit den Prototypen ändern kann
+        Set<String> replanned = new HashSet<>(changed);
+        replanned.addAll(next.compiled().keySet());
+        compactorManager.onSnapshotChanged(replanned);
+        ItemTextCache.clear();
+        if (changed.isEmpty()) {
+            logger.info("Compactors reloaded: no compactor files changed, item prototypes refreshed.");
+            return;
+        }
+
+        // Trigger-Handler nur neu registrieren, wenn sich die genutzten Trigger-Typen geändert haben
+        if (!previous.triggerIndex().types().equals(next.triggerIndex().types())) {
+            if (triggerListener != null) PlayerUnregisterUtil.unregisterListener(triggerListener);
+            this.triggerListener = new CompactorTriggerListener(plugin, compactorManager);
+            triggerListener.register(Bukkit.getPluginManager());
+        }
+
+        Set<String> reloaded = new HashSet<>(changed);
+        reloaded.retainAll(next.compiled().keySet());
+        compactorManager.warmupPlayers(Bukkit.getOnlinePlayers(), reloaded);
+        logger.info("Compactors reloaded: " + next.compactors().keySet() + " (changed: " + changed + ")");
     }
 
     public void shutdown() {
         // Absichtlich den Cache NICHT leeren (bis Server-Stopp)
+        if (cacheEvictionTask != null) {
+            cacheEvictionTask.cancel();
+            cacheEvictionTask = null;
+        }
+        if (prototypeRetryTask != null) {
+            prototypeRetryTask.cancel();
+            prototypeRetryTask = null;
+        }
         unloadCommandsAndEvents();
-        compactors.clear();
+        snapshot.set(CompactorSnapshot.EMPTY);
+        if (stateMigration != null) {
+            stateMigration.stop();
+        }
+        if (stateWriter != null) {
+            stateWriter.shutdown(); // ausstehende Toggles vor dem Schließen des Pools schreiben
+        }
         if (dbHelper != null) {
             dbHelper.shutdown();
         }
@@ -96,6 +225,8 @@ public class CompactorRegistry {
         }
         this.dbHelper = new DbAsyncHelper(db);
         this.playerStateDao = new CompactorPlayerStateDao(dbHelper, logger);
+        this.stateWriter = new CompactorStateWriter(playerStateDao, logger, plugin.getSettingsFile());
+        stateWriter.start(plugin);
         CompletableFuture<Void> schema = playerStateDao.initSchemaAsync();
         try {
             schema.join();
@@ -103,22 +234,156 @@ public class CompactorRegistry {
             logger.error("Compactors schema initialization failed: " + ex.getMessage());
             return false;
         }
+        // Alte Tabelle im Hintergrund nach v2 übernehmen (setzt nach Neustart am Cursor fort)
+        this.stateMigration = new CompactorStateMigration(dbHelper, playerStateDao, logger);
+        stateMigration.start();
         return true;
     }
 
     private void loadFiles() {
         var reader = new CompactorFileReader(plugin, logger);
-        List<CompactorConfig> configs = reader.readAll();
-        Set<String> seen = new HashSet<>();
-        for (CompactorConfig cfg : configs) {
-            String id = cfg.getId();
-            if (seen.contains(id)) {
+        List<CompactorFileReader.Source> sources = reader.read(Map.of());
+        resetPrototypes(CompactorSnapshot.EMPTY, sources);
+        CompactorSnapshot next = buildSnapshot(CompactorSnapshot.EMPTY, sources);
+        prewarmPrototypes(next);
+        snapshot.set(next);
+        configurePlayerCache(next);
+    }
+
+    // Neue Prototyp-Generation vor dem Kompilieren; buildSnapshot kompiliert danach alle Compactors neu
+    private void resetPrototypes(CompactorSnapshot previous, List<CompactorFileReader.Source> sources) {
+        int recipes = 0;
+        for (CompactorFileReader.Source src : sources) {
+            CompactorConfig cfg = src.unchanged() ? previous.compactors().get(src.id()) : src.parsed();
+            if (cfg != null) recipes += cfg.getRecipes().size();
+        }
+        long retryMs = prototypeRetrySeconds() * 1000L;
+        PrototypeStore.reset(recipes * 2, retryMs); // Required- und Result-Key pro Rezept
+    }
+
+    private int prototypeRetrySeconds() {
+        return plugin.getSettingsFile().getInt("cache.prototype-retry-seconds", 30);
+    }
+
+    /**
+     * Main-Thread: Compactors mit Prototypen, die beim Kompilieren fehlten (z.B. Custom-Item-Plugin lädt später),
+     * neu kompilieren, sobald diese auflösbar sind. Index, Graph und Result-Prototypen ziehen so ohne Reload nach.
+     */
+    private void refreshResolvedPrototypes() {
+        if (compactorManager == null || reloading.get()) return;
+        CompactorSnapshot previous = snapshot.get();
+        Map<String, CompiledCompactor> compiled = new HashMap<>(previous.compiled());
+        Set<String> refreshed = new HashSet<>();
+        for (CompiledCompactor cc : previous.compiled().values()) {
+            if (!cc.hasNewlyResolved()) continue;
+            compiled.put(cc.getId(), compile(cc.getConfig()));
+            refreshed.add(cc.getId());
+        }
+        if (refreshed.isEmpty()) return;
+        checkCrossCompactorCycles(compiled.values());
+
+        CompactorSnapshot next = new CompactorSnapshot(previous.compactors(), compiled, previous.fileHashes(),
+                RecipeIndex.of(compiled.values()),
+                TriggerIndex.of(compiled.values()),
+                previous.permissions());
+        if (!snapshot.compareAndSet(previous, next)) return; // Reload dazwischen; nächster Lauf prüft erneut
+        configurePlayerCache(next);
+        compactorManager.onSnapshotChanged(refreshed);
+        CompactorInventory.invalidateCache();
+        logger.info("Item prototypes resolved for compactor(s) " + refreshed + ", recipes re-indexed.");
+    }
+
+    // Main-Thread: löst alle Prototyp-Matcher einmal auf, statt beim ersten Slot-Check
+    private void prewarmPrototypes(CompactorSnapshot current) {
+        for (CompiledCompactor cc : current.compiled().values()) {
+            for (CompiledRecipe r : cc.getRecipes()) {
+                r.getMatcher().indexMaterial();
+            }
+        }
+    }
+
+    // Main-Thread: unveränderte Dateien übernehmen die Config; Pläne werden immer neu kompiliert,
+    // da sie Prototypen der aktuellen Generation enthalten (Result-Prototyp, Index-Material, Graph)
+    private CompactorSnapshot buildSnapshot(CompactorSnapshot previous, List<CompactorFileReader.Source> sources) {
+        Map<String, CompactorConfig> configs = new HashMap<>();
+        Map<String, CompiledCompactor> compiled = new HashMap<>();
+        Map<String, String> hashes = new HashMap<>();
+        for (CompactorFileReader.Source src : sources) {
+            String id = src.id();
+            if (configs.containsKey(id)) {
                 logger.warning("Duplicate compactor id '" + id + "' detected. Skipping this file.");
                 continue;
             }
-            seen.add(id);
-            compactors.put(id, cfg);
+            CompactorConfig cfg = src.unchanged() ? previous.compactors().get(id) : src.parsed();
+            if (cfg == null) continue;
+            configs.put(id, cfg);
+            hashes.put(id, src.hash());
+            if (!cfg.isEnabled()) continue;
+            compiled.put(id, compile(cfg));
         }
+        checkCrossCompactorCycles(compiled.values());
+        return new CompactorSnapshot(configs, compiled, hashes,
+                RecipeIndex.of(compiled.values()),
+                TriggerIndex.of(compiled.values()),
+                PermissionSnapshots.of(configs.values()));
+    }
+
+    // Layout = Rezept-Reihenfolge der kompilierten Compactors; alte Cache-Einträge werden beim Zugriff umgemappt
+    private void configurePlayerCache(CompactorSnapshot current) {
+        var settings = plugin.getSettingsFile();
+        playerCache.configure(settings.getInt("cache.offline-ttl-minutes", 30) * 60_000L,
+                settings.getInt("cache.max-players", 5000));
+        Map<String, List<String>> layouts = new HashMap<>();
+        for (CompiledCompactor cc : current.compiled().values()) {
+            List<String> ids = new ArrayList<>(cc.size());
+            for (CompiledRecipe r : cc.getRecipes()) ids.add(r.getId());
+            layouts.put(cc.getId(), ids);
+        }
+        playerCache.setLayouts(layouts);
+    }
+
+    // Zyklen über Compactor-Grenzen hinweg (A: x->y, B: y->x) triggern sich gegenseitig neu
+    private void checkCrossCompactorCycles(Collection<CompiledCompactor> compiled) {
+        List<CompiledRecipe> all = new ArrayList<>();
+        Map<CompiledRecipe, String> owner = new IdentityHashMap<>();
+        for (CompiledCompactor cc : compiled) {
+            if (cc.isCyclic()) continue; // bereits gemeldet
+            for (CompiledRecipe r : cc.getRecipes()) {
+                all.add(r);
+                owner.put(r, cc.getId());
+            }
+        }
+        RecipeGraph graph = RecipeGraph.build(all);
+        if (graph.hasCycles()) {
+            logger.warning("Recipe cycle across compactors detected: " + cycleIds(graph, r -> owner.get(r) + ":" + r.getId())
+                    + ". Players with these recipes enabled will convert items back and forth.");
+        }
+    }
+
+    // Ausführungsplan vorkompilieren (Reihenfolge, Prototypen, Materials) und Probleme einmal melden statt bei jedem Pass
+    private CompiledCompactor compile(CompactorConfig cfg) {
+        CompiledCompactor cc = CompiledCompactor.compile(cfg);
+        if (cc.isCyclic()) {
+            logger.error("Recipe cycle detected in compactor '" + cc.getId() + "': " + cycleIds(cc.getGraph(), r -> r.getId())
+                    + ". Chaining is disabled for this compactor. Check config.");
+        }
+        List<String> invalid = cc.invalidResults();
+        if (!invalid.isEmpty()) {
+            logger.warning("Result item of recipe(s) " + invalid + " in compactor '" + cc.getId()
+                    + "' could not be resolved yet. These recipes are skipped until it resolves (retried every "
+                    + prototypeRetrySeconds() + "s).");
+        }
+        List<String> unindexed = cc.unindexedRecipes();
+        if (!unindexed.isEmpty()) {
+            logger.warning("Required item of recipe(s) " + unindexed + " in compactor '" + cc.getId()
+                    + "' could not be resolved yet. These recipes are left out of the item index and never match"
+                    + " until it resolves (retried every " + prototypeRetrySeconds() + "s).");
+        }
+        return cc;
+    }
+
+    private static List<List<String>> cycleIds(RecipeGraph graph, Function<CompiledRecipe, String> label) {
+        return graph.getCycles().stream().map(cycle -> cycle.stream().map(label).toList()).toList();
     }
 
     private void initServicesAndEvents() {
@@ -126,11 +391,13 @@ public class CompactorRegistry {
             logger.warning("Compactors: database not ready, skipping initialization.");
             return;
         }
-        this.compactorManager = new CompactorManager(plugin, logger, compactors, playerStateDao, playerCache);
+        this.compactorManager = new CompactorManager(plugin, logger, snapshot, playerStateDao, stateWriter, playerCache);
+        compactorManager.getScheduler().configure(CompactionScheduler.TickBudget.from(plugin.getSettingsFile()));
+        compactorManager.getScheduler().start(plugin);
         this.triggerListener = new CompactorTriggerListener(plugin, compactorManager);
         this.playerListener = new CompactorPlayerListener(compactorManager);
         PluginManager pm = Bukkit.getPluginManager();
-        pm.registerEvents(triggerListener, plugin);
+        triggerListener.register(pm);
         pm.registerEvents(playerListener, plugin);
     }
 
@@ -141,6 +408,9 @@ public class CompactorRegistry {
     }
 
     private void unloadCommandsAndEvents() {
+        if (compactorManager != null) {
+            compactorManager.getScheduler().stop();
+        }
         if (commandRegistrar != null) {
             commandRegistrar.unregisterAll();
             commandRegistrar = null;
@@ -158,8 +428,6 @@ public class CompactorRegistry {
     // Nach (Re-)Load Online-Spieler vorwärmen, damit der Cache sofort gefüllt ist.
     private void warmupOnlinePlayers() {
         if (compactorManager == null) return;
-        for (Player p : Bukkit.getOnlinePlayers()) {
-            compactorManager.warmupPlayer(p);
-        }
+        compactorManager.warmupPlayers(Bukkit.getOnlinePlayers());
     }
 }
\ No newline at end of file